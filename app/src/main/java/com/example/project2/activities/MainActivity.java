@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Looper;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -18,29 +19,38 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.project2.R;
+import com.example.project2.adapters.AppRecyclerAdapter;
 import com.example.project2.adapters.SectionsPagerAdapter;
 import com.example.project2.dialogs.CategoryNameDialog;
 import com.example.project2.dialogs.CategoryEditDialog;
+import com.example.project2.fragments.BaseListFragment;
 import com.example.project2.widget.WidgetProvider;
 import com.example.project2.utils.AppManager;
+import com.example.project2.utils.CategoryManager;
+import com.example.project2.utils.IconPrefetcher;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 
-public class MainActivity extends AppCompatActivity implements CategoryEditDialog.CategoryEditListener {
+public class MainActivity extends AppCompatActivity implements CategoryEditDialog.CategoryEditListener,
+        BaseListFragment.SharedPoolProvider {
+    private static final int APP_LIST_SPAN_COUNT = 2;
 
     private ViewPager2 viewPager;
     private ProgressBar progressBar;
     private FrameLayout progressOverlay;
     private SectionsPagerAdapter pagerAdapter;
     private boolean isRefreshing = false;
+    private final RecyclerView.RecycledViewPool sharedViewPool = new RecyclerView.RecycledViewPool();
 
     private BroadcastReceiver packageReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            refreshAppList();
+            AppManager.applyPackageChangeAsync(MainActivity.this, intent,
+                    delta -> WidgetProvider.updateAllWidgets(MainActivity.this));
         }
     };
 
@@ -68,6 +78,11 @@ public class MainActivity extends AppCompatActivity implements CategoryEditDialo
 
         AppManager.init(this);
 
+        // Один пул строк на все вкладки приложений: экран видимой вкладки плюс экран уходящей
+        int screenHolders = AppRecyclerAdapter.getScreenHolderCount(this, APP_LIST_SPAN_COUNT);
+        sharedViewPool.setMaxRecycledViews(0, screenHolders * 2);
+        AppRecyclerAdapter.preinflateAsync(this, screenHolders);
+
         pagerAdapter = new SectionsPagerAdapter(this);
         viewPager.setAdapter(pagerAdapter);
 
@@ -75,6 +90,22 @@ public class MainActivity extends AppCompatActivity implements CategoryEditDialo
                 (tab, position) -> tab.setText(pagerAdapter.getPageTitle(position))
         ).attach();
 
+        // Когда главный поток простаивает, греем иконки первого экрана соседних вкладок
+        IconPrefetcher prefetcher = new IconPrefetcher(this);
+        viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                Looper.myQueue().addIdleHandler(() -> {
+                    for (int neighbour : new int[]{position + 1, position - 1}) {
+                        if (neighbour < 0 || neighbour >= pagerAdapter.getItemCount()) continue;
+                        if (neighbour == pagerAdapter.getCategoryTabPosition()) continue;
+                        prefetcher.warmFirstScreen(AppManager.getCachedPackages(pagerAdapter.getPageTitle(neighbour)));
+                    }
+                    return false;
+                });
+            }
+        });
+
         IntentFilter filter = new IntentFilter();
         filter.addAction(Intent.ACTION_PACKAGE_ADDED);
         filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
@@ -86,9 +117,17 @@ public class MainActivity extends AppCompatActivity implements CategoryEditDialo
         registerReceiver(packageReplacedReceiver, replacedFilter);
     }
 
+    // Процесс в фоне могут завершить в любой момент: отложенные записи журнала категорий пишутся сразу
+    @Override
+    protected void onStop() {
+        super.onStop();
+        CategoryManager.getInstance(this).flushJournal();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        AppRecyclerAdapter.clearPreinflated();
         unregisterReceiver(packageReceiver);
         unregisterReceiver(packageReplacedReceiver);
     }
@@ -157,6 +196,11 @@ public class MainActivity extends AppCompatActivity implements CategoryEditDialo
         dialog.show();
     }
 
+    @Override
+    public RecyclerView.RecycledViewPool getSharedViewPool() {
+        return sharedViewPool;
+    }
+
     public void switchToCategoriesTab() {
         viewPager.setCurrentItem(pagerAdapter.getCategoryTabPosition(), true);
     }
@@ -2,8 +2,6 @@ package com.example.project2.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
@@ -19,6 +17,7 @@ public class SplashActivity extends AppCompatActivity {
 
     private ProgressBar progressBar;
     private TextView progressText;
+    private boolean mainStarted = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,6 +38,8 @@ public class SplashActivity extends AppCompatActivity {
     }
 
     private void startMainActivity() {
+        if (mainStarted) return;
+        mainStarted = true;
         Intent intent = new Intent(SplashActivity.this, MainActivity.class);
         startActivity(intent);
         finish();
@@ -48,20 +49,22 @@ public class SplashActivity extends AppCompatActivity {
         progressText.setText("Сканирование приложений...");
         progressBar.setProgress(0);
 
-        AppManager.refreshCacheAsync(this, new AppManager.AppLoadCallback() {
+        // Сканируются только названия; иконки подгрузятся в списках по мере показа.
+        // Главный экран открывается после первой готовой части: вкладки дополняются по мере сканирования
+        AppManager.scanLabelsAsync(this, new AppManager.ScanProgressListener() {
+            @Override
+            public void onProgress(List<AppInfo> partial, int scanned, int total) {
+                if (mainStarted) return;
+                progressBar.setProgress(total > 0 ? scanned * 100 / total : 100);
+                progressText.setText("Сканирование приложений... " + scanned + "/" + total);
+                if (!partial.isEmpty()) startMainActivity();
+            }
+        }, new AppManager.AppLoadCallback() {
             @Override
             public void onLoaded(List<AppInfo> apps) {
-                progressBar.setProgress(50);
-                progressText.setText("Кэширование иконок...");
-
-                AppManager.loadIconsFromFilesAsync(SplashActivity.this, new AppManager.IconsLoadCallback() {
-                    @Override
-                    public void onIconsLoaded() {
-                        progressBar.setProgress(100);
-                        progressText.setText("Готово!");
-                        new Handler(Looper.getMainLooper()).postDelayed(() -> startMainActivity(), 500);
-                    }
-                });
+                progressBar.setProgress(100);
+                progressText.setText("Готово!");
+                startMainActivity();
             }
         });
     }
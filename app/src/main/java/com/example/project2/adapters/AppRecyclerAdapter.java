@@ -4,59 +4,150 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.project2.R;
 import com.example.project2.fragments.BaseListFragment;
 import com.example.project2.models.AppInfo;
 import com.example.project2.utils.AppManager;
+import com.example.project2.utils.IconPrefetcher;
+import com.example.project2.utils.IconRequestScheduler;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class AppRecyclerAdapter extends RecyclerView.Adapter<AppRecyclerAdapter.ViewHolder>
-        implements BaseListFragment.UpdatableAdapter<AppInfo> {
+        implements BaseListFragment.UpdatableAdapter<AppInfo>, IconPrefetcher.PackageSource {
 
     public interface OnAppLongClickListener {
         void onLongClick(AppInfo app);
     }
 
+    public interface OnHolderCreatedListener {
+        // preinflated — строка взята из созданных заранее в фоне, иначе создана в главном потоке
+        void onHolderCreated(boolean preinflated);
+    }
+
+    // Строки, созданные заранее в фоне; onCreateViewHolder берёт их вместо инфлейта в главном потоке
+    private static final Queue<View> preinflatedViews = new ConcurrentLinkedQueue<>();
+
+    // Частичная перепривязка строки: изменилось только название или только иконка
+    private static final String PAYLOAD_LABEL = "label";
+    private static final String PAYLOAD_ICON = "icon";
+    // Высота строки item_app: иконка 48dp плюс отступы 2 x 12dp
+    private static final int ITEM_HEIGHT_DP = 72;
+
+    // Разница списков по имени пакета считается в фоне, адаптер получает только точечные уведомления.
+    // Строка меняется, если изменилось название или отметка иконки (пакет обновлён), а не просто экземпляр AppInfo.
+    private static final DiffUtil.ItemCallback<AppInfo> DIFF_CALLBACK = new DiffUtil.ItemCallback<AppInfo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.getPackageName().equals(newItem.getPackageName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            return oldItem.hasSameLabel(newItem) && oldItem.getIconStamp() == newItem.getIconStamp();
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull AppInfo oldItem, @NonNull AppInfo newItem) {
+            List<String> payload = new ArrayList<>(2);
+            if (!oldItem.hasSameLabel(newItem)) payload.add(PAYLOAD_LABEL);
+            if (oldItem.getIconStamp() != newItem.getIconStamp()) payload.add(PAYLOAD_ICON);
+            return payload;
+        }
+    };
+
     private final Context context;
-    private List<AppInfo> apps;
+    private final AsyncListDiffer<AppInfo> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final PackageManager packageManager;
     private final OnAppLongClickListener longClickListener;
+    private final OnHolderCreatedListener holderListener;
 
-    public AppRecyclerAdapter(Context context, List<AppInfo> apps, OnAppLongClickListener listener) {
+    public AppRecyclerAdapter(Context context, List<AppInfo> apps, OnAppLongClickListener listener,
+                              OnHolderCreatedListener holderListener) {
         this.context = context;
-        this.apps = apps;
+        differ.submitList(apps);
         this.packageManager = context.getPackageManager();
         this.longClickListener = listener;
+        this.holderListener = holderListener;
     }
 
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(context).inflate(R.layout.item_app, parent, false);
+        View view = preinflatedViews.poll();
+        boolean preinflated = view != null;
+        if (view == null) view = LayoutInflater.from(context).inflate(R.layout.item_app, parent, false);
+        if (holderListener != null) holderListener.onHolderCreated(preinflated);
         return new ViewHolder(view);
     }
 
+    // Сколько строк помещается на один экран сетки
+    public static int getScreenHolderCount(Context context, int spanCount) {
+        float density = context.getResources().getDisplayMetrics().density;
+        int rows = (int) (context.getResources().getDisplayMetrics().heightPixels / (ITEM_HEIGHT_DP * density)) + 1;
+        return rows * spanCount;
+    }
+
+    // Разметка строк инфлейтится в фоне обычным LayoutInflater, чтобы первая вкладка не ждала инфлейта.
+    // Адаптер здесь не создаётся: ViewHolder собирается в onCreateViewHolder главного потока.
+    // Строки привязаны к контексту активности, поэтому она очищает их в onDestroy
+    public static void preinflateAsync(Context context, int count) {
+        clearPreinflated();
+        AppManager.executor.execute(() -> {
+            LayoutInflater inflater = LayoutInflater.from(context);
+            FrameLayout parent = new FrameLayout(context);
+            for (int i = 0; i < count; i++) preinflatedViews.add(inflater.inflate(R.layout.item_app, parent, false));
+        });
+    }
+
+    public static void clearPreinflated() {
+        preinflatedViews.clear();
+    }
+
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppInfo app = apps.get(position);
+        AppInfo app = differ.getCurrentList().get(position);
         holder.name.setText(app.getAppName());
+        setIcon(holder, null);
         holder.icon.setImageDrawable(app.getIcon());
 
-        loadIconAsync(app, holder.icon);
+        loadIconAsync(app, holder);
+        bindListeners(holder, app);
+    }
 
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        AppInfo app = differ.getCurrentList().get(position);
+        for (Object payload : payloads) {
+            List<?> changes = (List<?>) payload;
+            if (changes.contains(PAYLOAD_LABEL)) holder.name.setText(app.getAppName());
+            // Старая иконка остаётся на месте, пока не загрузится новая; тот же битмап повторно не ставится
+            if (changes.contains(PAYLOAD_ICON)) loadIconAsync(app, holder);
+        }
+        bindListeners(holder, app);
+    }
+
+    private void bindListeners(ViewHolder holder, AppInfo app) {
         holder.itemView.setOnClickListener(v -> launchApp(app));
         holder.itemView.setOnLongClickListener(v -> {
             if (longClickListener != null) longClickListener.onLongClick(app);
@@ -66,34 +157,61 @@ public class AppRecyclerAdapter extends RecyclerView.Adapter<AppRecyclerAdapter.
 
     @Override
     public int getItemCount() {
-        return apps.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public String getPackageAt(int position) {
+        return differ.getCurrentList().get(position).getPackageName();
     }
 
     @Override
     public void updateData(List<AppInfo> newData) {
-        this.apps = newData;
-        notifyDataSetChanged();
+        differ.submitList(newData);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        cancelIconRequest(holder);
+        setIcon(holder, null);
+        holder.icon.setImageDrawable(null);
     }
 
-    private void loadIconAsync(AppInfo app, ImageView imageView) {
-        Bitmap cached = AppManager.getCachedIcon(app.getPackageName());
+    private void loadIconAsync(AppInfo app, ViewHolder holder) {
+        String packageName = app.getPackageName();
+        if (holder.iconRequest != null && holder.iconRequest.getPackageName().equals(packageName)) return;
+        cancelIconRequest(holder);
+        Bitmap cached = AppManager.acquireCachedIcon(packageName);
         if (cached != null) {
-            imageView.setImageBitmap(cached);
+            IconPrefetcher.onIconShown(packageName, true);
+            setIcon(holder, cached);
             return;
         }
-        imageView.setTag(app.getPackageName());
-        AppManager.executor.execute(() -> {
-            Bitmap bitmap = AppManager.loadIconBitmap(context, app.getPackageName());
-            if (bitmap != null) {
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    if (imageView.getTag() != null && imageView.getTag().equals(app.getPackageName())) {
-                        imageView.setImageBitmap(bitmap);
-                    }
-                });
-            }
+        holder.iconRequest = AppManager.requestIcon(context, packageName, bitmap -> {
+            IconPrefetcher.onIconShown(packageName, false);
+            holder.iconRequest = null;
+            setIcon(holder, bitmap);
         });
     }
 
+    private void cancelIconRequest(ViewHolder holder) {
+        if (holder.iconRequest == null) return;
+        holder.iconRequest.cancel();
+        holder.iconRequest = null;
+    }
+
+    // bitmap уже удержан (acquire) и переходит строке; прежний отпускается, чтобы пул мог его переиспользовать
+    private void setIcon(ViewHolder holder, Bitmap bitmap) {
+        if (holder.boundIcon == bitmap) {
+            AppManager.releaseIcon(bitmap);
+            return;
+        }
+        AppManager.releaseIcon(holder.boundIcon);
+        holder.boundIcon = bitmap;
+        if (bitmap != null) holder.icon.setImageBitmap(bitmap);
+    }
+
     private void launchApp(AppInfo app) {
         try {
             Intent launchIntent = packageManager.getLaunchIntentForPackage(app.getPackageName());
@@ -110,6 +228,8 @@ public class AppRecyclerAdapter extends RecyclerView.Adapter<AppRecyclerAdapter.
     static class ViewHolder extends RecyclerView.ViewHolder {
         ImageView icon;
         TextView name;
+        Bitmap boundIcon;
+        IconRequestScheduler.Request iconRequest;
 
         ViewHolder(@NonNull View itemView) {
             super(itemView);
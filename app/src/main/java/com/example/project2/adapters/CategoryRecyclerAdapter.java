@@ -1,19 +1,22 @@
 package com.example.project2.adapters;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.project2.R;
 import com.example.project2.fragments.BaseListFragment;
 import com.example.project2.models.Category;
-import com.example.project2.utils.CategoryManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class CategoryRecyclerAdapter extends RecyclerView.Adapter<CategoryRecyclerAdapter.ViewHolder>
@@ -27,20 +30,47 @@ public class CategoryRecyclerAdapter extends RecyclerView.Adapter<CategoryRecycl
         void onLongClick(Category category);
     }
 
+    // Частичная перепривязка: название и цвет или только счётчик приложений
+    private static final String PAYLOAD_LABEL = "label";
+    private static final String PAYLOAD_COUNT = "count";
+
+    // Опубликованные CategoryManager категории не меняются, поэтому старый и новый списки сравниваются без копий
+    private static final DiffUtil.ItemCallback<Category> DIFF_CALLBACK = new DiffUtil.ItemCallback<Category>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Category oldItem, @NonNull Category newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Category oldItem, @NonNull Category newItem) {
+            return sameLabel(oldItem, newItem) && oldItem.getMemberCount() == newItem.getMemberCount();
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Category oldItem, @NonNull Category newItem) {
+            List<String> payload = new ArrayList<>(2);
+            if (!sameLabel(oldItem, newItem)) payload.add(PAYLOAD_LABEL);
+            if (oldItem.getMemberCount() != newItem.getMemberCount()) payload.add(PAYLOAD_COUNT);
+            return payload;
+        }
+
+        private boolean sameLabel(Category a, Category b) {
+            return TextUtils.equals(a.getName(), b.getName()) && a.getColor() == b.getColor();
+        }
+    };
+
     private final Context context;
-    private List<Category> categories;
+    private final AsyncListDiffer<Category> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final OnCategoryClickListener clickListener;
     private final OnCategoryLongClickListener longClickListener;
-    private final CategoryManager categoryManager;
 
     public CategoryRecyclerAdapter(Context context, List<Category> categories,
                                    OnCategoryClickListener clickListener,
                                    OnCategoryLongClickListener longClickListener) {
         this.context = context;
-        this.categories = categories;
         this.clickListener = clickListener;
         this.longClickListener = longClickListener;
-        this.categoryManager = CategoryManager.getInstance(context);
+        updateData(categories);
     }
 
     @NonNull
@@ -52,12 +82,37 @@ public class CategoryRecyclerAdapter extends RecyclerView.Adapter<CategoryRecycl
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Category category = categories.get(position);
+        Category category = differ.getCurrentList().get(position);
+        bindLabel(holder, category);
+        bindCount(holder, category);
+        bindListeners(holder, category);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Category category = differ.getCurrentList().get(position);
+        for (Object payload : payloads) {
+            List<?> changes = (List<?>) payload;
+            if (changes.contains(PAYLOAD_LABEL)) bindLabel(holder, category);
+            if (changes.contains(PAYLOAD_COUNT)) bindCount(holder, category);
+        }
+        bindListeners(holder, category);
+    }
+
+    private void bindLabel(ViewHolder holder, Category category) {
         holder.name.setText(category.getName());
-        int count = categoryManager.getAppsCountInCategory(category.getId());
-        holder.count.setText(count + " прил.");
         holder.colorIndicator.setBackgroundColor(category.getColor());
+    }
+
+    private void bindCount(ViewHolder holder, Category category) {
+        holder.count.setText(category.getMemberCount() + " прил.");
+    }
 
+    private void bindListeners(ViewHolder holder, Category category) {
         holder.itemView.setOnClickListener(v -> {
             if (clickListener != null) clickListener.onClick(category);
         });
@@ -70,13 +125,12 @@ public class CategoryRecyclerAdapter extends RecyclerView.Adapter<CategoryRecycl
 
     @Override
     public int getItemCount() {
-        return categories.size();
+        return differ.getCurrentList().size();
     }
 
     @Override
     public void updateData(List<Category> newData) {
-        this.categories = newData;
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newData));
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
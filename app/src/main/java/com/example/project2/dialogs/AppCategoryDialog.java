@@ -20,8 +20,10 @@ import androidx.fragment.app.DialogFragment;
 import com.example.project2.R;
 import com.example.project2.models.AppInfo;
 import com.example.project2.models.Category;
+import com.example.project2.models.CategorySet;
 import com.example.project2.utils.AppManager;
 import com.example.project2.utils.CategoryManager;
+import com.example.project2.widget.WidgetProvider;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -88,7 +90,7 @@ public class AppCategoryDialog extends DialogFragment {
                 }
             }
 
-            List<Integer> appCategoryIds = categoryManager.getAppCategories(packageName);
+            CategorySet appCategories = categoryManager.getAppCategorySet(packageName);
             int size = userCategories.size();
             if (savedInstanceState == null) {
                 int[] savedStates = getArguments().getIntArray(ARG_STATES);
@@ -100,7 +102,7 @@ public class AppCategoryDialog extends DialogFragment {
                     states = new int[size];
                     original = new boolean[size];
                     for (int i = 0; i < size; i++) {
-                        boolean isIn = appCategoryIds.contains(userCategories.get(i).getId());
+                        boolean isIn = appCategories.contains(userCategories.get(i).getId());
                         original[i] = isIn;
                         states[i] = isIn ? 1 : 0;
                     }
@@ -203,23 +205,24 @@ public class AppCategoryDialog extends DialogFragment {
     }
 
     private void saveChanges() {
-        boolean changed = false;
         int added = 0, removed = 0;
+        CategoryManager.Batch batch = categoryManager.edit();
         for (int i = 0; i < userCategories.size(); i++) {
             int newState = states[i];
             boolean wasChecked = original[i];
             Category cat = userCategories.get(i);
             if (newState == 1 && !wasChecked) {
-                categoryManager.addAppToCategory(packageName, cat.getId());
+                batch.addApp(packageName, cat.getId());
                 added++;
-                changed = true;
             } else if ((newState == 0 || newState == 2) && wasChecked) {
-                categoryManager.removeAppFromCategory(packageName, cat.getId());
+                batch.removeApp(packageName, cat.getId());
                 removed++;
-                changed = true;
             }
         }
+        boolean changed = batch.commit();
         if (changed) {
+            categoryManager.flushJournal();
+            WidgetProvider.updateAllWidgets(requireContext());
             String message;
             if (added > 0 && removed > 0) {
                 message = "Изменения сохранены";
@@ -2,9 +2,13 @@ package com.example.project2.dialogs;
 
 import android.app.Dialog;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -30,7 +34,10 @@ import com.example.project2.utils.CategoryManager;
 import com.example.project2.widget.WidgetProvider;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class CategoryEditDialog extends DialogFragment {
 
@@ -53,6 +60,10 @@ public class CategoryEditDialog extends DialogFragment {
     private ListView listView;
     private Button btnSave, btnCancel;
     private CategoryEditListener listener;
+    // Битмапы из кэша, на которые ссылаются строки списка; отпускаются при закрытии диалога
+    private final List<Bitmap> retainedIcons = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean destroyed; // после onDestroy загруженные иконки сразу отпускаются
 
     public interface CategoryEditListener {
         void onCategoryEdited();
@@ -130,8 +141,7 @@ public class CategoryEditDialog extends DialogFragment {
         AppManager.getAllAppsAsync(requireContext(), apps -> {
             allApps = apps;
             prepareAppItems();
-            adapter = new AppItemAdapter(requireContext(), appItems,
-                    isNewCategory ? new ArrayList<>() : category.getPackageNames());
+            adapter = new AppItemAdapter(requireContext(), appItems);
             listView.setAdapter(adapter);
         });
 
@@ -147,32 +157,32 @@ public class CategoryEditDialog extends DialogFragment {
                 errorText.setVisibility(View.GONE);
             }
 
-            Category workingCategory;
+            // Переданная категория может быть объектом из снимка CategoryManager — её не меняем, имя уходит в пакет.
+            // Новая категория создаётся в том же пакете, что и отметки приложений
+            int categoryId;
+            CategoryManager.Batch batch = categoryManager.edit();
             if (isNewCategory) {
-                workingCategory = categoryManager.createCategory(name);
-                if (workingCategory == null) {
-                    Toast.makeText(getContext(), "Не удалось создать категорию", Toast.LENGTH_SHORT).show();
-                    return;
-                }
+                batch.createCategory(name);
+                categoryId = CategoryManager.NEW_CATEGORY;
             } else {
-                workingCategory = category;
-                workingCategory.setName(name);
-                categoryManager.updateCategory(workingCategory);
+                categoryId = category.getId();
+                batch.updateCategory(categoryId, name, category.getColor());
             }
 
+            // Все отметки сохраняются одним пакетом: одна запись в журнал и одно обновление списка
             for (AppItem item : appItems) {
-                boolean currentlyInCategory = workingCategory.containsPackage(item.packageName);
+                boolean currentlyInCategory = categoryManager.isAppInCategory(item.packageName, categoryId);
                 if (item.state == 1 && !currentlyInCategory) {
-                    categoryManager.addAppToCategory(item.packageName, workingCategory.getId());
-                } else if (item.state == 2 && currentlyInCategory) {
-                    categoryManager.removeAppFromCategory(item.packageName, workingCategory.getId());
-                } else if (item.state == 0 && currentlyInCategory) {
-                    categoryManager.removeAppFromCategory(item.packageName, workingCategory.getId());
+                    batch.addApp(item.packageName, categoryId);
+                } else if ((item.state == 2 || item.state == 0) && currentlyInCategory) {
+                    batch.removeApp(item.packageName, categoryId);
                 }
             }
+            boolean changed = batch.commit();
+            if (changed) categoryManager.flushJournal();
 
             Toast.makeText(getContext(), "Категория сохранена", Toast.LENGTH_SHORT).show();
-            WidgetProvider.updateAllWidgets(requireContext());
+            if (changed) WidgetProvider.updateAllWidgets(requireContext());
 
             if (listener != null) {
                 listener.onCategoryEdited();
@@ -186,19 +196,34 @@ public class CategoryEditDialog extends DialogFragment {
         return dialog;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        destroyed = true;
+        for (Bitmap bitmap : retainedIcons) AppManager.releaseIcon(bitmap);
+        retainedIcons.clear();
+    }
+
+    // bitmap уже удержан (acquire); отпускается в onDestroy
+    private Drawable retainIcon(Context context, Bitmap bitmap) {
+        retainedIcons.add(bitmap);
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
     private void prepareAppItems() {
         appItems = new ArrayList<>();
-        List<String> currentPackages = (isNewCategory || category == null) ? new ArrayList<>() : category.getPackageNames();
+        int currentId = (isNewCategory || category == null) ? -1 : category.getId();
+        Set<String> preselected = preselectedPackages != null ? new HashSet<>(preselectedPackages) : Collections.emptySet();
 
         for (AppInfo app : allApps) {
             AppItem item = new AppItem();
             item.packageName = app.getPackageName();
             item.appName = app.getAppName();
             item.icon = app.getIcon();
-            if (currentPackages.contains(item.packageName)) {
+            if (currentId >= 0 && categoryManager.isAppInCategory(item.packageName, currentId)) {
                 item.state = 1;
                 item.originalInCategory = true;
-            } else if (isNewCategory && preselectedPackages != null && preselectedPackages.contains(item.packageName)) {
+            } else if (isNewCategory && preselected.contains(item.packageName)) {
                 item.state = 1;
                 item.originalInCategory = false;
             } else {
@@ -221,13 +246,11 @@ public class CategoryEditDialog extends DialogFragment {
         private Context context;
         private List<AppItem> items;
         private LayoutInflater inflater;
-        private List<String> originalPackages;
 
-        AppItemAdapter(Context context, List<AppItem> items, List<String> originalPackages) {
+        AppItemAdapter(Context context, List<AppItem> items) {
             this.context = context;
             this.items = items;
             this.inflater = LayoutInflater.from(context);
-            this.originalPackages = originalPackages;
         }
 
         @Override
@@ -256,6 +279,8 @@ public class CategoryEditDialog extends DialogFragment {
             AppItem item = items.get(position);
             holder.icon.setImageDrawable(item.icon);
             holder.name.setText(item.appName);
+            holder.icon.setTag(item.packageName);
+            if (item.icon == null) loadIconAsync(item, holder.icon);
 
             int color;
             switch (item.state) {
@@ -279,6 +304,31 @@ public class CategoryEditDialog extends DialogFragment {
             return convertView;
         }
 
+        // Иконки, не загруженные при сканировании, подгружаются только для показанных строк
+        private void loadIconAsync(AppItem item, ImageView imageView) {
+            Bitmap cached = AppManager.acquireCachedIcon(item.packageName);
+            if (cached != null) {
+                item.icon = retainIcon(context, cached);
+                imageView.setImageDrawable(item.icon);
+                return;
+            }
+            AppManager.executor.execute(() -> {
+                Bitmap bitmap = AppManager.acquireIcon(context, item.packageName);
+                if (bitmap != null) {
+                    mainHandler.post(() -> {
+                        // Диалог закрыт, пока иконка грузилась: удерживать её уже некому
+                        if (destroyed) {
+                            AppManager.releaseIcon(bitmap);
+                            return;
+                        }
+                        if (item.icon == null) item.icon = retainIcon(context, bitmap);
+                        else AppManager.releaseIcon(bitmap);
+                        if (item.packageName.equals(imageView.getTag())) imageView.setImageDrawable(item.icon);
+                    });
+                }
+            });
+        }
+
         class ViewHolder {
             ImageView icon;
             TextView name;
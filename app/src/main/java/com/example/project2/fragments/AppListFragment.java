@@ -11,7 +11,6 @@ import com.example.project2.dialogs.AppCategoryDialog;
 import com.example.project2.models.AppInfo;
 import com.example.project2.utils.AppManager;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class AppListFragment extends BaseListFragment<AppInfo> {
@@ -37,7 +36,15 @@ public class AppListFragment extends BaseListFragment<AppInfo> {
 
     @Override
     protected LiveData<List<AppInfo>> getLiveData() {
-        return AppManager.getAllAppsLiveData();
+        return AppManager.getAppsLiveData(category);
+    }
+
+    @Override
+    protected RecyclerView.RecycledViewPool getSharedPool() {
+        if (getActivity() instanceof SharedPoolProvider) {
+            return ((SharedPoolProvider) getActivity()).getSharedViewPool();
+        }
+        return null;
     }
 
     @Override
@@ -47,21 +54,7 @@ public class AppListFragment extends BaseListFragment<AppInfo> {
             dialog.setListener(() -> {
             });
             dialog.show(getParentFragmentManager(), "app_category");
-        });
-    }
-
-    @Override
-    protected List<AppInfo> filterData(List<AppInfo> data) {
-        if (category == null || category.equals("All")) {
-            return new ArrayList<>(data);
-        }
-        List<AppInfo> filtered = new ArrayList<>();
-        for (AppInfo app : data) {
-            if (category.equals(app.getAutoCategory())) {
-                filtered.add(app);
-            }
-        }
-        return filtered;
+        }, this::onHolderCreated);
     }
 
     @Override
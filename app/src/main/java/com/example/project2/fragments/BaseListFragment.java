@@ -15,10 +15,15 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.project2.R;
+import com.example.project2.utils.IconPrefetcher;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class BaseListFragment<T> extends Fragment {
+    // Счётчики создания строк на все вкладки: в главном потоке (рывки при переключении вкладок) и заранее в фоне
+    private static final AtomicInteger mainInflations = new AtomicInteger();
+    private static final AtomicInteger preinflatedUsed = new AtomicInteger();
 
     protected RecyclerView recyclerView;
     protected TextView emptyView;
@@ -38,7 +43,15 @@ public abstract class BaseListFragment<T> extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
-        recyclerView.setLayoutManager(new GridLayoutManager(getContext(), getSpanCount()));
+        GridLayoutManager layoutManager = new GridLayoutManager(getContext(), getSpanCount());
+        RecyclerView.RecycledViewPool sharedPool = getSharedPool();
+        if (sharedPool != null) {
+            // Строки уходящей вкладки возвращаются в общий пул и достаются следующей
+            layoutManager.setRecycleChildrenOnDetach(true);
+            recyclerView.setRecycledViewPool(sharedPool);
+        }
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.addOnScrollListener(new IconPrefetcher(requireContext()));
 
         getLiveData().observe(getViewLifecycleOwner(), new Observer<List<T>>() {
             @Override
@@ -65,6 +78,29 @@ public abstract class BaseListFragment<T> extends Fragment {
         });
     }
 
+    // Общий пул строк, если вкладка его использует и активность его предоставляет
+    protected RecyclerView.RecycledViewPool getSharedPool() {
+        return null;
+    }
+
+    // Передаётся адаптеру вкладки; вызывается при создании каждой строки
+    protected void onHolderCreated(boolean preinflated) {
+        if (preinflated) preinflatedUsed.incrementAndGet();
+        else mainInflations.incrementAndGet();
+    }
+
+    // Метрики пула: сколько строк лежит в пуле и сколько создано в главном потоке и заранее в фоне
+    public String getRecyclerStats() {
+        RecyclerView.RecycledViewPool pool = recyclerView != null ? recyclerView.getRecycledViewPool() : null;
+        return getClass().getSimpleName() + ": pooled=" + (pool != null ? pool.getRecycledViewCount(0) : 0)
+                + ", inflated on main=" + mainInflations.get() + ", preinflated=" + preinflatedUsed.get();
+    }
+
+    public static void resetRecyclerStats() {
+        mainInflations.set(0);
+        preinflatedUsed.set(0);
+    }
+
     protected int getSpanCount() {
         return 2;
     }
@@ -92,4 +128,9 @@ public abstract class BaseListFragment<T> extends Fragment {
     public interface UpdatableAdapter<T> {
         void updateData(List<T> newData);
     }
+
+    // Активность, которая держит один пул строк на все вкладки со списками приложений
+    public interface SharedPoolProvider {
+        RecyclerView.RecycledViewPool getSharedViewPool();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.example.project2.models;
+
+import android.graphics.drawable.Drawable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Каталог приложений «структурой массивов»: по колонке на поле вместо отдельных объектов с полями.
+// Названия лежат подряд в одном массиве байт UTF-8 (строка каталога хранит смещение и длину),
+// имена пакетов интернируются — тот же экземпляр строки используют ключи кэшей и карт категорий.
+// Автокатегории берутся из общей таблицы строк (несколько значений на весь каталог), множество
+// категорий хранится только у приложений, которые в них состоят, колонка иконок создаётся при
+// первой записи. AppInfo — вид на строку каталога: ссылка на каталог и номер строки.
+// Размер каталога фиксирован; строки заполняются один раз (в том числе из разных потоков,
+// каждый — свои строки), дальше меняются только отдельные поля.
+public final class AppCatalog {
+    // Общая для всех каталогов таблица автокатегорий: их столько, сколько правил классификации
+    private static final ConcurrentHashMap<String, String> STRING_TABLE = new ConcurrentHashMap<>();
+    private static final long NO_LABEL = -1;
+    // Средняя длина названия в байтах: начальный размер массива названий
+    private static final int LABEL_BYTES_PER_ROW = 24;
+
+    private final String[] packageNames;
+    private final long[] labels; // смещение << 32 | длина в байтах; NO_LABEL — названия нет
+    private final String[] autoCategories;
+    private final CategorySet[] userCategories; // null — приложение не состоит в категориях
+    private final long[] iconStamps; // время последней установки пакета: новая отметка — возможно новая иконка
+    private volatile Drawable[] icons;
+    private volatile String[] labelStrings; // декодированные названия: только у строк, которые уже читали
+    private volatile byte[] labelBytes;
+    private int labelEnd; // под блокировкой каталога
+
+    public AppCatalog(int size) {
+        packageNames = new String[size];
+        labels = new long[size];
+        autoCategories = new String[size];
+        userCategories = new CategorySet[size];
+        iconStamps = new long[size];
+        labelBytes = new byte[size * LABEL_BYTES_PER_ROW];
+    }
+
+    public int size() {
+        return packageNames.length;
+    }
+
+    // Заполняет строку и возвращает вид на неё
+    public AppInfo set(int row, String packageName, String label, String autoCategory) {
+        return set(row, packageName, label, autoCategory, 0);
+    }
+
+    public AppInfo set(int row, String packageName, String label, String autoCategory, long iconStamp) {
+        fill(row, packageName, label, autoCategory);
+        iconStamps[row] = iconStamp;
+        return new AppInfo(this, row);
+    }
+
+    void fill(int row, String packageName, String label, String autoCategory) {
+        packageNames[row] = packageName != null ? packageName.intern() : null;
+        labels[row] = label != null ? appendLabel(label.getBytes(StandardCharsets.UTF_8)) : NO_LABEL;
+        String[] decoded = labelStrings;
+        if (decoded != null) decoded[row] = null;
+        autoCategories[row] = intern(autoCategory);
+    }
+
+    // Новый массив публикуется после копирования, поэтому читатель видит все ранее записанные названия
+    private synchronized long appendLabel(byte[] bytes) {
+        byte[] heap = labelBytes;
+        if (labelEnd + bytes.length > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(heap.length + heap.length / 2, labelEnd + bytes.length));
+        }
+        System.arraycopy(bytes, 0, heap, labelEnd, bytes.length);
+        labelBytes = heap;
+        long ref = ((long) labelEnd << 32) | bytes.length;
+        labelEnd += bytes.length;
+        return ref;
+    }
+
+    private static String intern(String value) {
+        if (value == null) return null;
+        String shared = STRING_TABLE.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    String getPackageName(int row) { return packageNames[row]; }
+
+    // Название декодируется при первом чтении и запоминается: привязка строки списка не создаёт новую String.
+    // Сравнение названий идёт по байтам (labelEquals) и строк не декодирует
+    String getLabel(int row) {
+        long ref = labels[row];
+        if (ref == NO_LABEL) return null;
+        String[] column = labelStrings;
+        if (column == null) column = createLabelStrings();
+        String label = column[row];
+        if (label == null) {
+            // Гонка безопасна: оба потока запишут одинаковую строку
+            label = new String(labelBytes, (int) (ref >>> 32), (int) ref, StandardCharsets.UTF_8);
+            column[row] = label;
+        }
+        return label;
+    }
+
+    private synchronized String[] createLabelStrings() {
+        if (labelStrings == null) labelStrings = new String[size()];
+        return labelStrings;
+    }
+
+    boolean labelEquals(int row, AppCatalog other, int otherRow) {
+        long ref = labels[row], otherRef = other.labels[otherRow];
+        if (ref == NO_LABEL || otherRef == NO_LABEL) return ref == otherRef;
+        int length = (int) ref;
+        if (length != (int) otherRef) return false;
+        byte[] heap = labelBytes, otherHeap = other.labelBytes;
+        int from = (int) (ref >>> 32), otherFrom = (int) (otherRef >>> 32);
+        for (int i = 0; i < length; i++) {
+            if (heap[from + i] != otherHeap[otherFrom + i]) return false;
+        }
+        return true;
+    }
+
+    long getIconStamp(int row) { return iconStamps[row]; }
+
+    String getAutoCategory(int row) { return autoCategories[row]; }
+    void setAutoCategory(int row, String autoCategory) { autoCategories[row] = intern(autoCategory); }
+
+    CategorySet getUserCategories(int row) { return userCategories[row]; }
+
+    void setUserCategories(int row, CategorySet categories) {
+        userCategories[row] = categories == null || categories.isEmpty() ? null : categories;
+    }
+
+    void addToUserCategory(int row, int categoryId) {
+        CategorySet categories = userCategories[row];
+        if (categories == null) { categories = new CategorySet(); userCategories[row] = categories; }
+        categories.add(categoryId);
+    }
+
+    void removeFromUserCategory(int row, int categoryId) {
+        CategorySet categories = userCategories[row];
+        if (categories != null && categories.remove(categoryId) && categories.isEmpty()) userCategories[row] = null;
+    }
+
+    Drawable getIcon(int row) {
+        Drawable[] column = icons;
+        return column != null ? column[row] : null;
+    }
+
+    synchronized void setIcon(int row, Drawable icon) {
+        if (icons == null) {
+            if (icon == null) return;
+            icons = new Drawable[size()];
+        }
+        icons[row] = icon;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.project2.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Изменение списка приложений, вызванное установкой, обновлением или удалением одного пакета
+public class AppDelta {
+    public static final int ADDED = 0;
+    public static final int UPDATED = 1;
+    public static final int REMOVED = 2;
+
+    private final int type;
+    private final String packageName;
+    private final List<AppInfo> apps;
+
+    public AppDelta(int type, String packageName, List<AppInfo> apps) {
+        this.type = type;
+        this.packageName = packageName;
+        this.apps = apps != null ? apps : new ArrayList<>();
+    }
+
+    public int getType() { return type; }
+    public String getPackageName() { return packageName; }
+    // Новые записи пакета (для REMOVED — пустой список)
+    public List<AppInfo> getApps() { return apps; }
+}
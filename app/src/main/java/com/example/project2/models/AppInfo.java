@@ -1,52 +1,70 @@
 package com.example.project2.models;
 
-import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 
-import java.util.ArrayList;
 import java.util.List;
 
+// Вид на строку каталога приложений (AppCatalog): сам объект хранит только ссылку на каталог и номер строки.
+// Отдельно созданное приложение (тесты, чтение старого JSON-кэша) получает собственный каталог на одну строку.
 public class AppInfo {
-    private String packageName;
-    private String appName;
-    private transient Drawable icon;
-    private Bitmap cachedIcon;
-    private String autoCategory;
-    private List<Integer> userCategoryIds;
+    final transient AppCatalog catalog;
+    final int row;
 
     public AppInfo(String packageName, String appName, Drawable icon) {
-        this.packageName = packageName;
-        this.appName = appName;
-        this.icon = icon;
-        this.autoCategory = "Other";
-        this.userCategoryIds = new ArrayList<>();
+        AppCatalog own = new AppCatalog(1);
+        own.fill(0, packageName, appName, "Other");
+        own.setIcon(0, icon);
+        this.catalog = own;
+        this.row = 0;
     }
 
-    public String getPackageName() { return packageName; }
-    public String getAppName() { return appName; }
-    public Drawable getIcon() { return icon; }
-    public void setIcon(Drawable icon) { this.icon = icon; }
+    AppInfo(AppCatalog catalog, int row) {
+        this.catalog = catalog;
+        this.row = row;
+    }
+
+    public String getPackageName() { return catalog.getPackageName(row); }
+    public String getAppName() { return catalog.getLabel(row); }
+    // Сравнение названий без создания строк
+    public boolean hasSameLabel(AppInfo other) { return catalog.labelEquals(row, other.catalog, other.row); }
+    public Drawable getIcon() { return catalog.getIcon(row); }
+    public void setIcon(Drawable icon) { catalog.setIcon(row, icon); }
+    // Меняется при обновлении пакета; 0 — неизвестно
+    public long getIconStamp() { return catalog.getIconStamp(row); }
 
-    public Bitmap getCachedIcon() { return cachedIcon; }
-    public void setCachedIcon(Bitmap cachedIcon) { this.cachedIcon = cachedIcon; }
+    public String getAutoCategory() { return catalog.getAutoCategory(row); }
+    public void setAutoCategory(String autoCategory) { catalog.setAutoCategory(row, autoCategory); }
 
-    public String getAutoCategory() { return autoCategory; }
-    public void setAutoCategory(String autoCategory) { this.autoCategory = autoCategory; }
+    public List<Integer> getUserCategoryIds() { return getUserCategories().toIds(); }
+    public void setUserCategoryIds(List<Integer> userCategoryIds) { catalog.setUserCategories(row, CategorySet.of(userCategoryIds)); }
 
-    public List<Integer> getUserCategoryIds() { return userCategoryIds; }
-    public void setUserCategoryIds(List<Integer> userCategoryIds) { this.userCategoryIds = userCategoryIds; }
+    // Живое множество без копирования: только для чтения; пустое множество создаётся заново
+    public CategorySet getUserCategories() {
+        CategorySet categories = catalog.getUserCategories(row);
+        return categories != null ? categories : new CategorySet();
+    }
+    public void setUserCategories(CategorySet userCategories) { catalog.setUserCategories(row, userCategories); }
 
     public void addToUserCategory(int categoryId) {
-        if (!userCategoryIds.contains(categoryId)) {
-            userCategoryIds.add(categoryId);
-        }
+        catalog.addToUserCategory(row, categoryId);
     }
 
     public void removeFromUserCategory(int categoryId) {
-        userCategoryIds.remove((Integer) categoryId);
+        catalog.removeFromUserCategory(row, categoryId);
     }
 
     public boolean isInUserCategory(int categoryId) {
-        return userCategoryIds.contains(categoryId);
+        CategorySet categories = catalog.getUserCategories(row);
+        return categories != null && categories.contains(categoryId);
+    }
+
+    public boolean isInAnyUserCategory(CategorySet categories) {
+        CategorySet mine = catalog.getUserCategories(row);
+        return mine != null && mine.intersects(categories);
+    }
+
+    public boolean isInAllUserCategories(CategorySet categories) {
+        CategorySet mine = catalog.getUserCategories(row);
+        return mine != null ? mine.containsAll(categories) : categories.isEmpty();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package com.example.project2.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Типизированный запрос к списку приложений: все, автокатегория, пользовательская категория,
+// а также объединение, пересечение и разность запросов. Неизменяемый, годится как ключ кэша результатов.
+// Объединение и пересечение одних пользовательских категорий проверяются одной маской битов.
+public final class AppQuery {
+    public static final int ALL = 0;
+    public static final int AUTO_CATEGORY = 1;
+    public static final int USER_CATEGORY = 2;
+    public static final int UNION = 3;
+    public static final int INTERSECTION = 4;
+    public static final int DIFFERENCE = 5;
+
+    private static final String USER_PREFIX = "user_";
+    private static final AppQuery ALL_APPS = new AppQuery(ALL, null, 0, Collections.emptyList());
+
+    private final int type;
+    private final String autoCategory;
+    private final int userCategoryId;
+    private final List<AppQuery> parts;
+    // Маска категорий, если все части — пользовательские категории; иначе null
+    private final CategorySet userMask;
+
+    private AppQuery(int type, String autoCategory, int userCategoryId, List<AppQuery> parts) {
+        this.type = type;
+        this.autoCategory = autoCategory;
+        this.userCategoryId = userCategoryId;
+        this.parts = parts;
+        this.userMask = (type == UNION || type == INTERSECTION) ? buildUserMask(parts) : null;
+    }
+
+    private static CategorySet buildUserMask(List<AppQuery> parts) {
+        CategorySet mask = new CategorySet();
+        for (AppQuery part : parts) {
+            if (part.type != USER_CATEGORY) return null;
+            mask.add(part.userCategoryId);
+        }
+        return mask;
+    }
+
+    public static AppQuery all() { return ALL_APPS; }
+
+    public static AppQuery autoCategory(String category) {
+        return new AppQuery(AUTO_CATEGORY, category, 0, Collections.emptyList());
+    }
+
+    public static AppQuery userCategory(int categoryId) {
+        return new AppQuery(USER_CATEGORY, null, categoryId, Collections.emptyList());
+    }
+
+    public static AppQuery union(AppQuery... queries) {
+        return new AppQuery(UNION, null, 0, Collections.unmodifiableList(Arrays.asList(queries.clone())));
+    }
+
+    public static AppQuery intersection(AppQuery... queries) {
+        return new AppQuery(INTERSECTION, null, 0, Collections.unmodifiableList(Arrays.asList(queries.clone())));
+    }
+
+    // Приложения из include, не попадающие в exclude: например, «в Работе, но не в Соцсетях»
+    public static AppQuery difference(AppQuery include, AppQuery exclude) {
+        return new AppQuery(DIFFERENCE, null, 0, Collections.unmodifiableList(Arrays.asList(include, exclude)));
+    }
+
+    // Строковые теги виджетов и вкладок: "All", "Games", "user_5"
+    public static AppQuery fromTag(String tag) {
+        if (tag == null || tag.equals("All")) return all();
+        if (tag.startsWith(USER_PREFIX)) {
+            try {
+                return userCategory(Integer.parseInt(tag.substring(USER_PREFIX.length())));
+            } catch (NumberFormatException ignored) { }
+        }
+        return autoCategory(tag);
+    }
+
+    public boolean matches(AppInfo app) {
+        switch (type) {
+            case AUTO_CATEGORY: return autoCategory.equals(app.getAutoCategory());
+            case USER_CATEGORY: return app.isInUserCategory(userCategoryId);
+            case UNION:
+                if (userMask != null) return app.isInAnyUserCategory(userMask);
+                for (AppQuery part : parts) if (part.matches(app)) return true;
+                return false;
+            case INTERSECTION:
+                if (userMask != null) return app.isInAllUserCategories(userMask);
+                for (AppQuery part : parts) if (!part.matches(app)) return false;
+                return true;
+            case DIFFERENCE: return parts.get(0).matches(app) && !parts.get(1).matches(app);
+            default: return true;
+        }
+    }
+
+    public int getType() { return type; }
+    public String getAutoCategory() { return autoCategory; }
+    public int getUserCategoryId() { return userCategoryId; }
+    public List<AppQuery> getParts() { return parts; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AppQuery)) return false;
+        AppQuery other = (AppQuery) o;
+        return type == other.type && userCategoryId == other.userCategoryId
+                && (autoCategory == null ? other.autoCategory == null : autoCategory.equals(other.autoCategory))
+                && parts.equals(other.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type;
+        result = 31 * result + (autoCategory != null ? autoCategory.hashCode() : 0);
+        result = 31 * result + userCategoryId;
+        result = 31 * result + parts.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case AUTO_CATEGORY: return autoCategory;
+            case USER_CATEGORY: return USER_PREFIX + userCategoryId;
+            case UNION: return "union" + parts;
+            case INTERSECTION: return "intersection" + parts;
+            case DIFFERENCE: return "difference" + parts;
+            default: return "All";
+        }
+    }
+}
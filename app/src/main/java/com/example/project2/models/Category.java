@@ -3,30 +3,36 @@ package com.example.project2.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Category implements Parcelable {
     private int id;
     private String name;
-    private List<String> packageNames;
     private int color;
     private boolean builtIn;
+    // Число приложений в категории ведёт CategoryManager; сам состав хранится в его карте приложений
+    private int memberCount;
 
     public Category(int id, String name) {
         this.id = id;
         this.name = name;
-        this.packageNames = new ArrayList<>();
         this.color = 0xFF6200EE;
         this.builtIn = false;
     }
 
+    // Копия для списков, которые сравниваются с предыдущим состоянием
+    public Category(Category other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.color = other.color;
+        this.builtIn = other.builtIn;
+        this.memberCount = other.memberCount;
+    }
+
     protected Category(Parcel in) {
         id = in.readInt();
         name = in.readString();
-        packageNames = in.createStringArrayList();
         color = in.readInt();
         builtIn = in.readByte() != 0;
+        memberCount = in.readInt();
     }
 
     public static final Creator<Category> CREATOR = new Creator<Category>() {
@@ -50,24 +56,19 @@ public class Category implements Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeInt(id);
         dest.writeString(name);
-        dest.writeStringList(packageNames);
         dest.writeInt(color);
         dest.writeByte((byte) (builtIn ? 1 : 0));
+        dest.writeInt(memberCount);
     }
 
     // Геттеры и сеттеры
     public int getId() { return id; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
-    public List<String> getPackageNames() { return packageNames; }
-    public void setPackageNames(List<String> packageNames) { this.packageNames = packageNames; }
-    public void addPackage(String packageName) {
-        if (!packageNames.contains(packageName)) packageNames.add(packageName);
-    }
-    public void removePackage(String packageName) { packageNames.remove(packageName); }
-    public boolean containsPackage(String packageName) { return packageNames.contains(packageName); }
     public int getColor() { return color; }
     public void setColor(int color) { this.color = color; }
     public boolean isBuiltIn() { return builtIn; }
     public void setBuiltIn(boolean builtIn) { this.builtIn = builtIn; }
+    public int getMemberCount() { return memberCount; }
+    public void setMemberCount(int memberCount) { this.memberCount = memberCount; }
 }
\ No newline at end of file
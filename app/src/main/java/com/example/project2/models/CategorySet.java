@@ -0,0 +1,211 @@
+package com.example.project2.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Компактное множество пользовательских категорий: каждая категория получает плотный номер (слот),
+// членство хранится битами в long[]. Проверка, подсчёт, объединение, пересечение и разность —
+// операции над словами по 64 категории. Не потокобезопасно; опубликованные множества не изменяются.
+public final class CategorySet {
+    private static final long[] EMPTY = new long[0];
+    // id категорий выдаются подряд, поэтому для малых id слот берётся из массива, остальные — из словаря
+    private static final int DIRECT_IDS = 1 << 16;
+
+    private static volatile int[] slotById = new int[0]; // слот + 1, 0 — слот не выдан
+    private static final ConcurrentHashMap<Integer, Integer> farSlots = new ConcurrentHashMap<>();
+    private static volatile int[] idBySlot = new int[0];
+    private static int slotCount;
+
+    private long[] words;
+
+    public CategorySet() {
+        words = EMPTY;
+    }
+
+    public CategorySet(CategorySet other) {
+        words = other.words.length > 0 ? other.words.clone() : EMPTY;
+    }
+
+    public static CategorySet of(Collection<Integer> categoryIds) {
+        CategorySet set = new CategorySet();
+        for (Integer id : categoryIds) set.add(id);
+        return set;
+    }
+
+    public static CategorySet of(int... categoryIds) {
+        CategorySet set = new CategorySet();
+        for (int id : categoryIds) set.add(id);
+        return set;
+    }
+
+    // Слот без выделения: -1, если категория ещё ни разу не встречалась
+    private static int peekSlot(int categoryId) {
+        if (categoryId >= 0 && categoryId < DIRECT_IDS) {
+            int[] table = slotById;
+            return categoryId < table.length ? table[categoryId] - 1 : -1;
+        }
+        Integer slot = farSlots.get(categoryId);
+        return slot != null ? slot : -1;
+    }
+
+    private static int slotOf(int categoryId) {
+        int slot = peekSlot(categoryId);
+        return slot >= 0 ? slot : allocateSlot(categoryId);
+    }
+
+    private static synchronized int allocateSlot(int categoryId) {
+        int slot = peekSlot(categoryId);
+        if (slot >= 0) return slot;
+        slot = slotCount++;
+        int[] ids = idBySlot;
+        if (slot >= ids.length) ids = Arrays.copyOf(ids, Math.max(slot + 1, ids.length * 2));
+        ids[slot] = categoryId;
+        idBySlot = ids; // запись volatile публикует новый слот и при записи в тот же массив
+        if (categoryId >= 0 && categoryId < DIRECT_IDS) {
+            int[] table = slotById;
+            if (categoryId >= table.length) table = Arrays.copyOf(table, Math.max(categoryId + 1, table.length * 2));
+            else table = table.clone();
+            table[categoryId] = slot + 1;
+            slotById = table;
+        } else {
+            farSlots.put(categoryId, slot);
+        }
+        return slot;
+    }
+
+    public boolean contains(int categoryId) {
+        int slot = peekSlot(categoryId);
+        if (slot < 0) return false;
+        int word = slot >>> 6;
+        return word < words.length && (words[word] & (1L << slot)) != 0;
+    }
+
+    // true, если категория добавлена впервые
+    public boolean add(int categoryId) {
+        int slot = slotOf(categoryId);
+        int word = slot >>> 6;
+        if (word >= words.length) words = Arrays.copyOf(words, word + 1);
+        long bit = 1L << slot;
+        if ((words[word] & bit) != 0) return false;
+        words[word] |= bit;
+        return true;
+    }
+
+    public boolean remove(int categoryId) {
+        int slot = peekSlot(categoryId);
+        if (slot < 0) return false;
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        if (word >= words.length || (words[word] & bit) == 0) return false;
+        words[word] &= ~bit;
+        return true;
+    }
+
+    public int size() {
+        int count = 0;
+        for (long w : words) count += Long.bitCount(w);
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (long w : words) if (w != 0) return false;
+        return true;
+    }
+
+    public boolean intersects(CategorySet other) {
+        int n = Math.min(words.length, other.words.length);
+        for (int i = 0; i < n; i++) if ((words[i] & other.words[i]) != 0) return true;
+        return false;
+    }
+
+    public boolean containsAll(CategorySet other) {
+        for (int i = 0; i < other.words.length; i++) {
+            long mine = i < words.length ? words[i] : 0;
+            if ((other.words[i] & ~mine) != 0) return false;
+        }
+        return true;
+    }
+
+    public CategorySet union(CategorySet other) {
+        CategorySet result = new CategorySet();
+        result.words = new long[Math.max(words.length, other.words.length)];
+        for (int i = 0; i < result.words.length; i++) {
+            result.words[i] = (i < words.length ? words[i] : 0) | (i < other.words.length ? other.words[i] : 0);
+        }
+        return result;
+    }
+
+    public CategorySet intersection(CategorySet other) {
+        CategorySet result = new CategorySet();
+        result.words = new long[Math.min(words.length, other.words.length)];
+        for (int i = 0; i < result.words.length; i++) result.words[i] = words[i] & other.words[i];
+        return result;
+    }
+
+    // Категории этого множества, которых нет в other
+    public CategorySet difference(CategorySet other) {
+        CategorySet result = new CategorySet(this);
+        int n = Math.min(result.words.length, other.words.length);
+        for (int i = 0; i < n; i++) result.words[i] &= ~other.words[i];
+        return result;
+    }
+
+    // id категорий в порядке слотов, без упаковки в Integer
+    public int[] toArray() {
+        int[] ids = idBySlot;
+        int[] result = new int[size()];
+        int n = 0;
+        for (int i = 0; i < words.length; i++) {
+            long w = words[i];
+            while (w != 0) {
+                result[n++] = ids[(i << 6) + Long.numberOfTrailingZeros(w)];
+                w &= w - 1;
+            }
+        }
+        return result;
+    }
+
+    // id категорий в порядке слотов
+    public List<Integer> toIds() {
+        int[] ids = idBySlot;
+        List<Integer> result = new ArrayList<>(size());
+        for (int i = 0; i < words.length; i++) {
+            long w = words[i];
+            while (w != 0) {
+                int slot = (i << 6) + Long.numberOfTrailingZeros(w);
+                result.add(ids[slot]);
+                w &= w - 1;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CategorySet)) return false;
+        long[] a = words, b = ((CategorySet) o).words;
+        int n = Math.max(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if ((i < a.length ? a[i] : 0) != (i < b.length ? b[i] : 0)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int last = words.length - 1;
+        while (last >= 0 && words[last] == 0) last--;
+        int result = 1;
+        for (int i = 0; i <= last; i++) result = 31 * result + Long.hashCode(words[i]);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toIds().toString();
+    }
+}
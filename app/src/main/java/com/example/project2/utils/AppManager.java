@@ -1,62 +1,133 @@
 package com.example.project2.utils;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.Intent;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.LruCache;
+import android.provider.Settings;
+import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.project2.models.AppCatalog;
+import com.example.project2.models.AppDelta;
 import com.example.project2.models.AppInfo;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.example.project2.models.AppQuery;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 
 public class AppManager {
+    private static final String TAG = "AppManager";
     private static final String PREFS_NAME = "app_cache";
+    // Ключи старого JSON-кэша, используются только для переноса в AppSnapshotStore
     private static final String KEY_APPS_LIST = "cached_apps";
-    private static final String KEY_LAST_UPDATE = "last_update";
-    private static final long CACHE_VALIDITY_MS = 24 * 60 * 60 * 1000;
-    private static final String ICON_DIR = "app_icons";
+    private static final String KEY_SEQUENCE_NUMBER = "sequence_number";
+    private static final String KEY_BOOT_COUNT = "boot_count";
+    private static final int SCAN_CHUNK_SIZE = 16;
+    private static final int SCAN_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
 
-    private static final Map<String, List<AppInfo>> categoryCache = new HashMap<>();
     public static final ExecutorService executor = Executors.newFixedThreadPool(3);
-    private static LruCache<String, Bitmap> iconCache = new LruCache<>(500);
+    // Отдельный пул для частей сканирования: задачи executor ждут их завершения и не должны делить с ними потоки
+    private static final ExecutorService scanExecutor = Executors.newFixedThreadPool(SCAN_THREADS);
+    private static final IconMemoryCache iconCache = new IconMemoryCache();
+    private static final IconRequestScheduler iconScheduler = new IconRequestScheduler();
+    // Загрузки иконок в процессе: с обращением к PackageManager (и сканирование) и только из файла
+    private static final ConcurrentHashMap<String, CompletableFuture<Bitmap>> inFlightIcons = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, CompletableFuture<Bitmap>> inFlightFileIcons = new ConcurrentHashMap<>();
+    private static final AtomicInteger coalescedIconLoads = new AtomicInteger();
     private static CategoryManager categoryManager;
-    private static List<AppInfo> cachedAllApps = null;
-    private static long lastCacheUpdate = 0;
+    private static volatile List<AppInfo> cachedAllApps = null;
+    // Список и индексы меняются только под cacheLock; трансляции и инкрементальные обновления
+    // выполняются по очереди в cacheExecutor, поэтому изменения одного пакета не обгоняют друг друга
+    private static final Object cacheLock = new Object();
+    private static final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor();
+    // Пакеты, изменённые во время полного сканирования (под cacheLock): после него пересканируются
+    private static Set<String> changedDuringScan;
+    private static final AppRegistry registry = new AppRegistry();
+    private static int lastSequenceNumber = -1;
+    private static int lastBootCount = -1;
     private static boolean isInitialized = false;
+    private static boolean isFullScanRunning = false;
+    private static final List<AppLoadCallback> pendingScanCallbacks = new ArrayList<>();
+    private static final List<ScanProgressListener> scanProgressListeners = new CopyOnWriteArrayList<>();
+    // Запросы с иконками, пришедшие во время сканирования без иконок: их обслуживает следующий проход
+    private static boolean scanLoadsIcons = false;
+    private static boolean iconScanQueued = false;
+    private static final List<AppLoadCallback> iconScanCallbacks = new ArrayList<>();
+    private static final List<ScanProgressListener> iconScanListeners = new ArrayList<>();
 
     private static MutableLiveData<List<AppInfo>> allAppsLiveData = new MutableLiveData<>();
+    // Списки вкладок по автокатегориям: считаются один раз в фоне на каждое обновление,
+    // вкладка получает свой неизменяемый список и только когда он действительно изменился
+    private static final ExecutorService partitionExecutor = Executors.newSingleThreadExecutor();
+    private static final Map<String, MutableLiveData<List<AppInfo>>> partitionLiveData = new ConcurrentHashMap<>();
+    private static final Map<String, List<AppInfo>> lastPartitions = new HashMap<>();
+    private static final AtomicReference<List<AppInfo>> pendingPartitionSource = new AtomicReference<>();
+    private static boolean partitioned = false;
 
     public interface AppLoadCallback { void onLoaded(List<AppInfo> apps); }
     public interface IconsLoadCallback { void onIconsLoaded(); }
+    public interface AppDeltaCallback { void onChanged(AppDelta delta); }
+    public interface ScanProgressListener { void onProgress(List<AppInfo> partial, int scanned, int total); }
+    // Битмап уже удержан для получателя: его нужно отпустить через releaseIcon
+    public interface IconCallback { void onIconLoaded(Bitmap bitmap); }
 
     public static void init(Context context) {
         if (isInitialized) return;
-        if (categoryManager == null) categoryManager = CategoryManager.getInstance(context);
-        loadCachedAppsFromPrefs(context);
-        if (!isCacheValid()) refreshCacheAsync(context, null);
-        else loadIconsFromFilesAsync(context, null);
+        iconCache.applyBudget(context);
+        context.getApplicationContext().registerComponentCallbacks(iconCache);
+        if (categoryManager == null) {
+            categoryManager = CategoryManager.getInstance(context);
+            categoryManager.addMembershipListener(new CategoryManager.MembershipListener() {
+                @Override
+                public void onAppAdded(String packageName, int categoryId) {
+                    registry.onAppAddedToCategory(packageName, categoryId);
+                }
+
+                @Override
+                public void onAppRemoved(String packageName, int categoryId) {
+                    registry.onAppRemovedFromCategory(packageName, categoryId);
+                }
+
+                @Override
+                public void onCategoryDeleted(int categoryId) {
+                    registry.onCategoryDeleted(categoryId);
+                }
+            });
+        }
+        if (cachedAllApps == null) loadCachedApps(context);
+        if (cachedAllApps == null) scanLabelsAsync(context, null, null);
+        else if (!isCacheValid()) refreshCacheAsync(context, null);
+        else {
+            loadIconsFromFilesAsync(context, null);
+            refreshChangedAsync(context, null);
+        }
         isInitialized = true;
     }
 
@@ -64,185 +135,582 @@ public class AppManager {
         return allAppsLiveData;
     }
 
+    // Список одной вкладки ("All" или автокатегория)
+    public static LiveData<List<AppInfo>> getAppsLiveData(String category) {
+        String key = category == null ? "All" : category;
+        MutableLiveData<List<AppInfo>> liveData = partitionLiveData.get(key);
+        if (liveData != null) return liveData;
+        MutableLiveData<List<AppInfo>> created = new MutableLiveData<>();
+        liveData = partitionLiveData.putIfAbsent(key, created);
+        if (liveData != null) return liveData;
+        // Вкладка открыта после последнего разбиения — отдаём ей уже посчитанный список
+        partitionExecutor.execute(() -> {
+            if (!partitioned) return;
+            List<AppInfo> last = lastPartitions.get(key);
+            created.postValue(last != null ? last : Collections.emptyList());
+        });
+        return created;
+    }
+
+    private static void publishApps(List<AppInfo> apps) {
+        allAppsLiveData.postValue(apps);
+        // Промежуточные списки, не успевшие разбиться, заменяются последним
+        if (pendingPartitionSource.getAndSet(apps) == null) partitionExecutor.execute(AppManager::partitionApps);
+    }
+
+    private static void partitionApps() {
+        List<AppInfo> apps = pendingPartitionSource.getAndSet(null);
+        if (apps == null) return;
+        Map<String, List<AppInfo>> partitions = new HashMap<>();
+        List<AppInfo> all = new ArrayList<>(apps.size());
+        for (AppInfo app : apps) {
+            all.add(app);
+            List<AppInfo> part = partitions.get(app.getAutoCategory());
+            if (part == null) { part = new ArrayList<>(); partitions.put(app.getAutoCategory(), part); }
+            part.add(app);
+        }
+        partitions.put("All", all);
+        Set<String> keys = new HashSet<>(partitions.keySet());
+        keys.addAll(lastPartitions.keySet());
+        keys.addAll(partitionLiveData.keySet());
+        for (String key : keys) {
+            List<AppInfo> part = partitions.get(key);
+            List<AppInfo> value = part != null ? Collections.unmodifiableList(part) : Collections.emptyList();
+            List<AppInfo> previous = lastPartitions.get(key);
+            boolean changed = !partitioned || !sameItems(previous, value);
+            lastPartitions.put(key, value);
+            MutableLiveData<List<AppInfo>> liveData = partitionLiveData.get(key);
+            if (changed && liveData != null) liveData.postValue(value);
+        }
+        partitioned = true;
+    }
+
+    // Изменение одного пакета: пересобираются только «All» и вкладки старой и новой автокатегории пакета
+    private static void publishDelta(List<AppInfo> apps, AppDelta delta, List<AppInfo> removed) {
+        allAppsLiveData.postValue(apps);
+        partitionExecutor.execute(() -> {
+            if (!partitioned) {
+                pendingPartitionSource.set(apps);
+                partitionApps();
+                return;
+            }
+            Set<String> keys = new HashSet<>();
+            keys.add("All");
+            for (AppInfo app : removed) keys.add(app.getAutoCategory());
+            for (AppInfo app : delta.getApps()) keys.add(app.getAutoCategory());
+            for (String key : keys) {
+                List<AppInfo> previous = lastPartitions.get(key);
+                List<AppInfo> part = new ArrayList<>(previous != null ? previous.size() + delta.getApps().size() : delta.getApps().size());
+                if (previous != null) {
+                    for (AppInfo app : previous) if (!app.getPackageName().equals(delta.getPackageName())) part.add(app);
+                }
+                for (AppInfo app : delta.getApps()) {
+                    if ("All".equals(key) || Objects.equals(key, app.getAutoCategory())) part.add(app);
+                }
+                List<AppInfo> value = Collections.unmodifiableList(part);
+                lastPartitions.put(key, value);
+                MutableLiveData<List<AppInfo>> liveData = partitionLiveData.get(key);
+                if (liveData != null && !sameItems(previous, value)) liveData.postValue(value);
+            }
+        });
+    }
+
+    private static boolean sameItems(List<AppInfo> a, List<AppInfo> b) {
+        if (a == null) return b.isEmpty();
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) if (a.get(i) != b.get(i)) return false;
+        return true;
+    }
+
+    // Кэш пригоден, пока последовательность изменений пакетов с момента сохранения не сброшена перезагрузкой
     public static boolean isCacheValid() {
-        return cachedAllApps != null && (System.currentTimeMillis() - lastCacheUpdate) < CACHE_VALIDITY_MS;
+        return cachedAllApps != null && lastSequenceNumber >= 0;
     }
 
     public static AppInfo getAppByPackageName(String packageName) {
-        if (cachedAllApps == null) return null;
-        for (AppInfo app : cachedAllApps) {
-            if (app.getPackageName().equals(packageName)) {
-                return app;
+        return registry.get(packageName);
+    }
+
+    // Версия категорий, из которой сканирование проставит членство; запоминается до сканирования
+    private static long categoryVersion() {
+        return categoryManager != null ? categoryManager.getVersion() : 0;
+    }
+
+    // Правка категорий, опубликованная после categoryVersion, но до установки приложений, ушла в прежние
+    // индексы: членство перепроставляется из текущего снимка и приложения устанавливаются заново.
+    // Слушатели членства вызываются после публикации снимка, поэтому более поздние правки дойдут до новых индексов
+    private static void installLocked(List<AppInfo> apps, long categoryVersion, Runnable install) {
+        while (true) {
+            if (categoryManager != null && categoryManager.getVersion() != categoryVersion) {
+                categoryVersion = categoryManager.getVersion();
+                categoryManager.updateAppsWithUserCategories(apps);
             }
+            install.run();
+            if (categoryVersion() == categoryVersion) return;
         }
-        return null;
     }
 
-    private static void loadCachedAppsFromPrefs(Context context) {
-        String json = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                .getString(KEY_APPS_LIST, null);
-        lastCacheUpdate = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                .getLong(KEY_LAST_UPDATE, 0);
-        if (json != null) {
-            try {
-                Gson gson = new Gson();
-                Type type = new TypeToken<List<AppInfo>>(){}.getType();
-                List<AppInfo> apps = gson.fromJson(json, type);
-                if (categoryManager != null) categoryManager.updateAppsWithUserCategories(apps);
+    // Единая точка замены всего списка: индексы перестраиваются вместе с ним
+    private static void setCachedApps(List<AppInfo> apps, long categoryVersion) {
+        synchronized (cacheLock) {
+            installLocked(apps, categoryVersion, () -> {
+                registry.setAll(apps);
                 cachedAllApps = apps;
-                allAppsLiveData.postValue(apps);
-            } catch (Exception e) { e.printStackTrace(); cachedAllApps = null; }
+            });
+        }
+    }
+
+    // Заменяет записи пакетов в списке и индексах; вызывается под cacheLock при загруженном списке.
+    // Прежние записи пакетов складываются в removed, если он передан
+    private static List<AppInfo> replacePackagesLocked(Set<String> packageNames, List<AppInfo> scanned, long categoryVersion,
+                                                       List<AppInfo> removed) {
+        List<AppInfo> apps = new ArrayList<>(cachedAllApps.size() + scanned.size());
+        for (AppInfo app : cachedAllApps) {
+            if (!packageNames.contains(app.getPackageName())) apps.add(app);
+            else if (removed != null) removed.add(app);
+        }
+        apps.addAll(scanned);
+        installLocked(scanned, categoryVersion, () -> registry.replacePackages(packageNames, scanned));
+        cachedAllApps = apps;
+        return apps;
+    }
+
+    // Снимок только отображается в память: записи декодируются при первом обращении к ним
+    private static void loadCachedApps(Context context) {
+        migrateLegacyCache(context);
+        AppSnapshotStore.Snapshot snapshot = AppSnapshotStore.read(context);
+        if (snapshot == null) {
+            lastSequenceNumber = -1;
+            return;
         }
+        lastSequenceNumber = snapshot.getSequenceNumber();
+        lastBootCount = snapshot.getBootCount();
+        if (lastBootCount != getBootCount(context)) lastSequenceNumber = -1;
+        List<AppInfo> apps = snapshot.asList(app -> {
+            if (categoryManager != null) app.setUserCategories(categoryManager.getAppCategorySet(app.getPackageName()));
+        });
+        setCachedApps(apps, categoryVersion());
+        publishApps(apps);
+    }
+
+    // Однократный перенос старого JSON-кэша из SharedPreferences в бинарный снимок
+    private static void migrateLegacyCache(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String json = prefs.getString(KEY_APPS_LIST, null);
+        if (json == null) return;
+        if (!AppSnapshotStore.exists(context)) {
+            try {
+                List<AppInfo> apps = JsonAdapters.appsFromJson(json);
+                AppSnapshotStore.write(context, apps, prefs.getInt(KEY_SEQUENCE_NUMBER, -1),
+                        prefs.getInt(KEY_BOOT_COUNT, -1));
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+        prefs.edit().remove(KEY_APPS_LIST).remove(KEY_SEQUENCE_NUMBER).remove(KEY_BOOT_COUNT).apply();
+    }
+
+    private static void saveCachedApps(Context context, List<AppInfo> apps, int sequenceNumber) {
+        lastSequenceNumber = sequenceNumber;
+        lastBootCount = getBootCount(context);
+        AppSnapshotStore.write(context, apps, sequenceNumber, lastBootCount);
+    }
+
+    private static int getBootCount(Context context) {
+        return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
     }
 
-    private static void saveCachedAppsToPrefs(Context context, List<AppInfo> apps) {
-        Gson gson = new Gson();
-        String json = gson.toJson(apps);
-        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
-                .edit()
-                .putString(KEY_APPS_LIST, json)
-                .putLong(KEY_LAST_UPDATE, System.currentTimeMillis())
-                .apply();
+    // Текущий номер последовательности; getChangedPackages(0) возвращает null, если с загрузки ничего не менялось
+    private static int getCurrentSequenceNumber(Context context) {
+        ChangedPackages changes = context.getPackageManager().getChangedPackages(0);
+        return changes != null ? changes.getSequenceNumber() : 0;
+    }
+
+    private static void deleteIconFile(Context context, String packageName) {
+        IconStore.getInstance(context).remove(packageName);
     }
 
     private static void saveIconToFile(Context context, String packageName, Bitmap bitmap) {
-        File iconDir = new File(context.getFilesDir(), ICON_DIR);
-        if (!iconDir.exists()) iconDir.mkdirs();
-        File iconFile = new File(iconDir, packageName.replace('.', '_') + ".png");
-        try (FileOutputStream fos = new FileOutputStream(iconFile)) {
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
-        } catch (IOException e) { e.printStackTrace(); }
+        byte[] data = IconRasterizer.encode(bitmap);
+        if (data != null) IconStore.getInstance(context).put(packageName, data);
     }
 
     private static Bitmap loadIconFromFile(Context context, String packageName) {
-        File iconFile = new File(context.getFilesDir(), ICON_DIR + "/" + packageName.replace('.', '_') + ".png");
-        return iconFile.exists() ? BitmapFactory.decodeFile(iconFile.getAbsolutePath()) : null;
+        byte[] data = IconStore.getInstance(context).get(packageName);
+        return data != null ? decodeIcon(context, data) : null;
     }
 
+    private static Bitmap decodeIcon(Context context, byte[] data) {
+        return IconRasterizer.decode(data, IconRasterizer.getTargetSize(context), IconRasterizer.getDensityDpi(context));
+    }
+
+    // Все сохранённые иконки читаются одним проходом по атласу в порядке смещений.
+    // В AppInfo битмапы из кэша не кладутся: вытесненный битмап уходит в BitmapPool, адаптеры берут иконку из кэша.
     public static void loadIconsFromFilesAsync(Context context, IconsLoadCallback callback) {
         if (cachedAllApps == null) { if (callback != null) callback.onIconsLoaded(); return; }
         executor.execute(() -> {
-            for (AppInfo app : cachedAllApps) {
-                String pkg = app.getPackageName();
-                Bitmap bitmap = iconCache.get(pkg);
-                if (bitmap == null) {
-                    bitmap = loadIconFromFile(context, pkg);
-                    if (bitmap != null) {
-                        iconCache.put(pkg, bitmap);
-                        app.setIcon(new BitmapDrawable(context.getResources(), bitmap));
-                    }
-                } else {
-                    app.setIcon(new BitmapDrawable(context.getResources(), bitmap));
-                }
-            }
+            IconStore.getInstance(context).forEach((pkg, data) -> {
+                if (iconCache.get(pkg) != null) return;
+                Bitmap bitmap = decodeIcon(context, data);
+                if (bitmap != null) iconCache.put(pkg, bitmap);
+            });
             if (callback != null) new Handler(Looper.getMainLooper()).post(callback::onIconsLoaded);
         });
     }
 
     private static List<AppInfo> scanAllAppsSync(Context context, boolean loadIcons) {
-        List<AppInfo> apps = new ArrayList<>();
+        return scanAllAppsSync(context, loadIcons, null);
+    }
+
+    // Список ResolveInfo делится на части, которые обрабатываются параллельно в scanExecutor.
+    // Все части пишут в один каталог, каждая — в свои строки; частичные списки содержат те же виды,
+    // что и итоговый, поэтому после частичной публикации строки не перепривязываются.
+    // listener вызывается в потоке сканирования после каждой готовой части с уже собранными приложениями в исходном порядке.
+    private static List<AppInfo> scanAllAppsSync(Context context, boolean loadIcons, ScanProgressListener listener) {
         PackageManager pm = context.getPackageManager();
         Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
         mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
         List<ResolveInfo> resolveInfos = pm.queryIntentActivities(mainIntent, 0);
-        for (ResolveInfo ri : resolveInfos) {
-            try {
-                String packageName = ri.activityInfo.packageName;
-                String appName = ri.loadLabel(pm).toString();
-                Drawable iconDrawable = null;
-                Bitmap iconBitmap = null;
-                if (loadIcons) {
-                    iconDrawable = ri.loadIcon(pm);
-                    if (iconDrawable instanceof BitmapDrawable) {
-                        iconBitmap = ((BitmapDrawable) iconDrawable).getBitmap();
-                    } else {
-                        iconBitmap = Bitmap.createBitmap(iconDrawable.getIntrinsicWidth(),
-                                iconDrawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
-                        Canvas canvas = new Canvas(iconBitmap);
-                        iconDrawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-                        iconDrawable.draw(canvas);
-                    }
-                    saveIconToFile(context, packageName, iconBitmap);
-                    iconCache.put(packageName, iconBitmap);
+        Map<String, PackageInfo> packageInfos = getPackageInfos(pm);
+        int total = resolveInfos.size();
+        int chunkCount = (total + SCAN_CHUNK_SIZE - 1) / SCAN_CHUNK_SIZE;
+        AtomicReferenceArray<List<AppInfo>> chunks = new AtomicReferenceArray<>(chunkCount);
+        AppCatalog catalog = new AppCatalog(total);
+        ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<>(scanExecutor);
+        for (int c = 0; c < chunkCount; c++) {
+            int index = c;
+            int from = c * SCAN_CHUNK_SIZE;
+            int to = Math.min(from + SCAN_CHUNK_SIZE, total);
+            completion.submit(() -> {
+                List<AppInfo> chunk = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    ResolveInfo ri = resolveInfos.get(i);
+                    AppInfo app = createAppInfo(context, pm, ri, packageInfos.get(ri.activityInfo.packageName), loadIcons, catalog, i);
+                    if (app != null) chunk.add(app);
                 }
-                AppInfo app = new AppInfo(packageName, appName, iconDrawable);
-                app.setAutoCategory(detectCategory(packageName, appName));
-                apps.add(app);
-            } catch (Exception e) { e.printStackTrace(); }
+                if (categoryManager != null) categoryManager.updateAppsWithUserCategories(chunk);
+                chunks.set(index, chunk);
+                return index;
+            });
+        }
+        int scanned = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            try {
+                int index = completion.take().get();
+                scanned += Math.min(SCAN_CHUNK_SIZE, total - index * SCAN_CHUNK_SIZE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) { e.printStackTrace(); }
+            if (listener != null) listener.onProgress(joinChunks(chunks), scanned, total);
+        }
+        return joinChunks(chunks);
+    }
+
+    private static List<AppInfo> joinChunks(AtomicReferenceArray<List<AppInfo>> chunks) {
+        List<AppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < chunks.length(); i++) {
+            List<AppInfo> chunk = chunks.get(i);
+            if (chunk != null) apps.addAll(chunk);
+        }
+        return apps;
+    }
+
+    // Сканирование только указанных пакетов; удалённые пакеты просто не попадают в результат.
+    // Найденные приложения одного вызова получают общий каталог
+    private static List<AppInfo> scanPackagesSync(Context context, Set<String> packageNames, boolean loadIcons) {
+        PackageManager pm = context.getPackageManager();
+        List<ResolveInfo> resolveInfos = new ArrayList<>();
+        Map<String, PackageInfo> packageInfos = new HashMap<>();
+        for (String packageName : packageNames) {
+            Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+            mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+            mainIntent.setPackage(packageName);
+            try {
+                packageInfos.put(packageName, pm.getPackageInfo(packageName, PackageManager.PackageInfoFlags.of(0)));
+            } catch (PackageManager.NameNotFoundException ignored) { }
+            resolveInfos.addAll(pm.queryIntentActivities(mainIntent, 0));
+        }
+        List<AppInfo> apps = new ArrayList<>(resolveInfos.size());
+        AppCatalog catalog = new AppCatalog(resolveInfos.size());
+        for (int i = 0; i < resolveInfos.size(); i++) {
+            ResolveInfo ri = resolveInfos.get(i);
+            AppInfo app = createAppInfo(context, pm, ri, packageInfos.get(ri.activityInfo.packageName), loadIcons, catalog, i);
+            if (app != null) apps.add(app);
         }
         if (categoryManager != null) categoryManager.updateAppsWithUserCategories(apps);
         return apps;
     }
 
+    // Сведения о всех пакетах одним запросом: по versionCode кэшируется результат классификатора категорий,
+    // lastUpdateTime служит отметкой версии иконки
+    private static Map<String, PackageInfo> getPackageInfos(PackageManager pm) {
+        Map<String, PackageInfo> packageInfos = new HashMap<>();
+        for (PackageInfo info : pm.getInstalledPackages(PackageManager.PackageInfoFlags.of(0))) {
+            packageInfos.put(info.packageName, info);
+        }
+        return packageInfos;
+    }
+
+    // Приложение записывается в строку row каталога; при ошибке строка остаётся пустой и в список не попадает
+    private static AppInfo createAppInfo(Context context, PackageManager pm, ResolveInfo ri, PackageInfo info, boolean loadIcons,
+                                         AppCatalog catalog, int row) {
+        try {
+            String packageName = ri.activityInfo.packageName;
+            long versionCode = info != null ? info.getLongVersionCode() : -1;
+            String appName = ri.loadLabel(pm).toString();
+            if (loadIcons) {
+                singleFlight(inFlightIcons, packageName, () -> {
+                    Bitmap iconBitmap = IconRasterizer.rasterize(ri.loadIcon(pm), IconRasterizer.getTargetSize(context));
+                    saveIconToFile(context, packageName, iconBitmap);
+                    iconCache.put(packageName, iconBitmap);
+                    return iconBitmap;
+                });
+            }
+            return catalog.set(row, packageName, appName,
+                    CategoryClassifier.getInstance(context).classify(packageName, appName, versionCode),
+                    info != null ? info.lastUpdateTime : 0);
+        } catch (Exception e) { e.printStackTrace(); return null; }
+    }
+
     public static void refreshCacheAsync(Context context, AppLoadCallback callback) {
+        refreshCacheAsync(context, true, null, callback);
+    }
+
+    // Быстрое первое сканирование: только пакеты, названия и автокатегории, без иконок.
+    // Иконки потом подгружаются по требованию через loadIconBitmap в порядке показа строк.
+    public static void scanLabelsAsync(Context context, ScanProgressListener progressListener, AppLoadCallback callback) {
+        refreshCacheAsync(context, false, progressListener, callback);
+    }
+
+    // Полное сканирование. Пока кэша нет, частичные результаты сразу публикуются в allAppsLiveData;
+    // при наличии кэша старый список остаётся на экране до конца сканирования.
+    // Повторный вызов во время сканирования только подключает listener и callback к текущему.
+    // Запрос с иконками к сканированию без иконок не подключается: после него запускается проход с иконками.
+    private static void refreshCacheAsync(Context context, boolean loadIcons, ScanProgressListener progressListener,
+                                          AppLoadCallback callback) {
+        synchronized (pendingScanCallbacks) {
+            if (isFullScanRunning && loadIcons && !scanLoadsIcons) {
+                iconScanQueued = true;
+                if (callback != null) iconScanCallbacks.add(callback);
+                if (progressListener != null) iconScanListeners.add(progressListener);
+                return;
+            }
+            if (callback != null) pendingScanCallbacks.add(callback);
+            if (progressListener != null) scanProgressListeners.add(progressListener);
+            if (isFullScanRunning) return;
+            isFullScanRunning = true;
+            scanLoadsIcons = loadIcons;
+        }
+        startFullScan(context, loadIcons);
+    }
+
+    // Запускается под флагом isFullScanRunning; проход с иконками, запрошенный во время сканирования,
+    // стартует сразу после него без снятия флага, чтобы к нему не подключился новый проход без иконок
+    private static void startFullScan(Context context, boolean loadIcons) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
         executor.execute(() -> {
-            List<AppInfo> apps = scanAllAppsSync(context, true);
-            cachedAllApps = apps;
-            saveCachedAppsToPrefs(context, apps);
-            categoryCache.clear();
-            allAppsLiveData.postValue(apps);
+            synchronized (cacheLock) { changedDuringScan = new HashSet<>(); }
+            int sequenceNumber = getCurrentSequenceNumber(context);
+            long categoryVersion = categoryVersion();
+            boolean publishPartial = cachedAllApps == null;
+            List<AppInfo> scannedApps = scanAllAppsSync(context, loadIcons, (partial, scanned, total) -> {
+                if (publishPartial) publishApps(partial);
+                for (ScanProgressListener l : scanProgressListeners) mainHandler.post(() -> l.onProgress(partial, scanned, total));
+            });
+            List<AppInfo> apps;
+            synchronized (cacheLock) {
+                setCachedApps(scannedApps, categoryVersion);
+                // Трансляция, пришедшая во время сканирования, могла быть обработана раньше, чем
+                // сканирование увидело пакет: такие пакеты перечитываются поверх нового списка
+                Set<String> changed = changedDuringScan;
+                changedDuringScan = null;
+                if (changed.isEmpty()) {
+                    apps = scannedApps;
+                } else {
+                    long changedVersion = categoryVersion();
+                    apps = replacePackagesLocked(changed, scanPackagesSync(context, changed, loadIcons), changedVersion, null);
+                }
+            }
+            saveCachedApps(context, apps, sequenceNumber);
+            publishApps(apps);
+            List<AppLoadCallback> callbacks;
+            boolean iconScan;
+            synchronized (pendingScanCallbacks) {
+                callbacks = new ArrayList<>(pendingScanCallbacks);
+                pendingScanCallbacks.clear();
+                scanProgressListeners.clear();
+                iconScan = iconScanQueued;
+                isFullScanRunning = iconScan;
+                if (iconScan) {
+                    iconScanQueued = false;
+                    scanLoadsIcons = true;
+                    pendingScanCallbacks.addAll(iconScanCallbacks);
+                    scanProgressListeners.addAll(iconScanListeners);
+                    iconScanCallbacks.clear();
+                    iconScanListeners.clear();
+                }
+            }
+            for (AppLoadCallback cb : callbacks) mainHandler.post(() -> cb.onLoaded(apps));
+            if (iconScan) startFullScan(context, true);
+        });
+    }
+
+    // Инкрементальное обновление: пересканируются только пакеты, изменённые с сохранённого номера последовательности.
+    // Если номер непригоден (нет кэша, перезагрузка), выполняется полное сканирование.
+    public static void refreshChangedAsync(Context context, AppLoadCallback callback) {
+        cacheExecutor.execute(() -> {
+            if (cachedAllApps == null || lastSequenceNumber < 0 || lastBootCount != getBootCount(context)) {
+                refreshCacheAsync(context, callback);
+                return;
+            }
+            ChangedPackages changes = context.getPackageManager().getChangedPackages(lastSequenceNumber);
+            if (changes == null || changes.getPackageNames().isEmpty()) {
+                List<AppInfo> apps = cachedAllApps;
+                if (callback != null) new Handler(Looper.getMainLooper()).post(() -> callback.onLoaded(apps));
+                return;
+            }
+            Set<String> changed = new HashSet<>(changes.getPackageNames());
+            for (String pkg : changed) {
+                iconCache.remove(pkg);
+                deleteIconFile(context, pkg);
+            }
+            long categoryVersion = categoryVersion();
+            List<AppInfo> scanned = scanPackagesSync(context, changed, true);
+            List<AppInfo> apps;
+            synchronized (cacheLock) {
+                if (changedDuringScan != null) changedDuringScan.addAll(changed);
+                apps = replacePackagesLocked(changed, scanned, categoryVersion, null);
+            }
+            saveCachedApps(context, apps, changes.getSequenceNumber());
+            publishApps(apps);
             if (callback != null) new Handler(Looper.getMainLooper()).post(() -> callback.onLoaded(apps));
         });
     }
 
+    // Точечное применение ACTION_PACKAGE_ADDED/REMOVED/REPLACED без полного сканирования.
+    // Номер последовательности не сдвигается: при следующем запуске пакет будет перепроверен инкрементально,
+    // поэтому снимок на диске не перезаписывается, а вкладки получают только изменение пакета.
+    public static void applyPackageChangeAsync(Context context, Intent intent, AppDeltaCallback callback) {
+        if (intent.getData() == null) return;
+        String packageName = intent.getData().getSchemeSpecificPart();
+        String action = intent.getAction();
+        boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+        // При обновлении приходят REMOVED и ADDED с EXTRA_REPLACING, за ними REPLACED: обрабатывается только он
+        if (packageName == null || replacing && (Intent.ACTION_PACKAGE_REMOVED.equals(action)
+                || Intent.ACTION_PACKAGE_ADDED.equals(action))) return;
+        cacheExecutor.execute(() -> {
+            synchronized (cacheLock) {
+                if (changedDuringScan != null) changedDuringScan.add(packageName);
+                if (cachedAllApps == null) return;
+            }
+            iconCache.remove(packageName);
+            deleteIconFile(context, packageName);
+            long categoryVersion = categoryVersion();
+            List<AppInfo> scanned = Intent.ACTION_PACKAGE_REMOVED.equals(action)
+                    ? new ArrayList<>()
+                    : scanPackagesSync(context, Collections.singleton(packageName), true);
+            AppDelta delta;
+            synchronized (cacheLock) {
+                if (changedDuringScan != null) changedDuringScan.add(packageName);
+                if (cachedAllApps == null) return;
+                boolean existed = registry.get(packageName) != null;
+                if (!existed && scanned.isEmpty()) return;
+                List<AppInfo> removed = new ArrayList<>(1);
+                List<AppInfo> apps = replacePackagesLocked(Collections.singleton(packageName), scanned, categoryVersion, removed);
+                int type = scanned.isEmpty() ? AppDelta.REMOVED : (existed ? AppDelta.UPDATED : AppDelta.ADDED);
+                delta = new AppDelta(type, packageName, scanned);
+                publishDelta(apps, delta, removed);
+            }
+            if (callback != null) new Handler(Looper.getMainLooper()).post(() -> callback.onChanged(delta));
+        });
+    }
+
     public static void getAllAppsAsync(Context context, AppLoadCallback callback) {
         init(context);
         if (cachedAllApps != null) callback.onLoaded(new ArrayList<>(cachedAllApps));
-        else refreshCacheAsync(context, callback);
+        else scanLabelsAsync(context, null, callback);
+    }
+
+    // Результаты запросов запоминаются в AppRegistry и поддерживаются при изменениях приложений и членства,
+    // поэтому повторный запрос вкладки или виджета не проходит по списку. Возвращаемый список неизменяемый.
+    public static void queryAppsAsync(Context context, AppQuery query, AppLoadCallback callback) {
+        getAllAppsAsync(context, apps -> callback.onLoaded(registry.query(query)));
     }
 
     public static void getAppsByCategoryAsync(Context context, String category, AppLoadCallback callback) {
-        getAllAppsAsync(context, apps -> {
-            List<AppInfo> filtered = new ArrayList<>();
-            if (category == null || category.equals("All")) filtered = apps;
-            else {
-                for (AppInfo app : apps) {
-                    if (category.equals(app.getAutoCategory())) filtered.add(app);
-                }
-            }
-            callback.onLoaded(filtered);
-        });
+        queryAppsAsync(context, category == null ? AppQuery.all() : AppQuery.fromTag(category), callback);
     }
 
     public static void getAppsByUserCategoryAsync(Context context, int categoryId, AppLoadCallback callback) {
-        getAllAppsAsync(context, apps -> {
-            List<AppInfo> filtered = new ArrayList<>();
-            for (AppInfo app : apps) {
-                if (app.isInUserCategory(categoryId)) filtered.add(app);
-            }
-            callback.onLoaded(filtered);
-        });
+        queryAppsAsync(context, AppQuery.userCategory(categoryId), callback);
     }
 
     public static List<AppInfo> getAppsSync(Context context, String category) {
+        return getAppsSync(context, AppQuery.fromTag(category));
+    }
+
+    public static List<AppInfo> getAppsSync(Context context, AppQuery query) {
         init(context);
         if (cachedAllApps == null) {
-            loadCachedAppsFromPrefs(context);
-            if (cachedAllApps == null) cachedAllApps = scanAllAppsSync(context, true);
-        }
-        List<AppInfo> result = new ArrayList<>();
-        if (category == null || category.equals("All")) result.addAll(cachedAllApps);
-        else if (category.startsWith("user_")) {
-            int catId = Integer.parseInt(category.substring(5));
-            for (AppInfo app : cachedAllApps) if (app.isInUserCategory(catId)) result.add(app);
-        } else {
-            for (AppInfo app : cachedAllApps) if (category.equals(app.getAutoCategory())) result.add(app);
+            loadCachedApps(context);
+            if (cachedAllApps == null) {
+                long categoryVersion = categoryVersion();
+                setCachedApps(scanAllAppsSync(context, true), categoryVersion);
+            }
         }
+        List<AppInfo> result = registry.query(query);
         for (AppInfo app : result) {
-            Bitmap cached = iconCache.get(app.getPackageName());
-            if (cached != null) app.setIcon(new BitmapDrawable(context.getResources(), cached));
-            else {
-                Bitmap fromFile = loadIconFromFile(context, app.getPackageName());
-                if (fromFile != null) {
-                    iconCache.put(app.getPackageName(), fromFile);
-                    app.setIcon(new BitmapDrawable(context.getResources(), fromFile));
-                }
-            }
+            if (iconCache.get(app.getPackageName()) == null) loadIconSingleFlight(context, app.getPackageName(), false);
         }
         return result;
     }
 
     public static Bitmap loadIconBitmap(Context context, String packageName) {
+        Bitmap cached = iconCache.get(packageName);
+        if (cached != null) return cached;
+        return loadIconSingleFlight(context, packageName, true);
+    }
+
+    // Загрузка иконки для показанной строки: новые запросы обслуживаются первыми, результат приходит в главный поток.
+    // Запрос нужно отменить, когда строка переработана или привязана к другому пакету.
+    public static IconRequestScheduler.Request requestIcon(Context context, String packageName, IconCallback callback) {
+        return iconScheduler.request(context, packageName, callback);
+    }
+
+    // Одновременные запросы иконки одного пакета ждут одну загрузку: декодирование и запись на диск выполняются один раз.
+    // Загрузки только из файла объединяются отдельно, чтобы их пустой результат не достался запросу, которому нужен
+    // PackageManager. Загрузка через PackageManager (и сканирование) сначала читает файл, поэтому к ней
+    // присоединяются и запросы только из файла
+    private static Bitmap loadIconSingleFlight(Context context, String packageName, boolean fromPackageManager) {
+        if (!fromPackageManager) {
+            CompletableFuture<Bitmap> fullLoad = inFlightIcons.get(packageName);
+            if (fullLoad != null) {
+                coalescedIconLoads.incrementAndGet();
+                return fullLoad.join();
+            }
+        }
+        return singleFlight(fromPackageManager ? inFlightIcons : inFlightFileIcons, packageName,
+                () -> loadIconBitmapUncached(context, packageName, fromPackageManager));
+    }
+
+    private static Bitmap singleFlight(ConcurrentHashMap<String, CompletableFuture<Bitmap>> inFlightLoads, String packageName,
+                                       Supplier<Bitmap> loader) {
+        CompletableFuture<Bitmap> future = new CompletableFuture<>();
+        CompletableFuture<Bitmap> inFlight = inFlightLoads.putIfAbsent(packageName, future);
+        if (inFlight != null) {
+            coalescedIconLoads.incrementAndGet();
+            return inFlight.join();
+        }
+        Bitmap bitmap = null;
+        try {
+            bitmap = loader.get();
+            return bitmap;
+        } finally {
+            inFlightLoads.remove(packageName, future);
+            future.complete(bitmap);
+        }
+    }
+
+    private static Bitmap loadIconBitmapUncached(Context context, String packageName, boolean fromPackageManager) {
         Bitmap cached = iconCache.get(packageName);
         if (cached != null) return cached;
         Bitmap fromFile = loadIconFromFile(context, packageName);
@@ -250,16 +718,10 @@ public class AppManager {
             iconCache.put(packageName, fromFile);
             return fromFile;
         }
+        if (!fromPackageManager) return null;
         try {
             Drawable drawable = context.getPackageManager().getApplicationIcon(packageName);
-            Bitmap bitmap;
-            if (drawable instanceof BitmapDrawable) bitmap = ((BitmapDrawable) drawable).getBitmap();
-            else {
-                bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(bitmap);
-                drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-                drawable.draw(canvas);
-            }
+            Bitmap bitmap = IconRasterizer.rasterize(drawable, IconRasterizer.getTargetSize(context));
             iconCache.put(packageName, bitmap);
             saveIconToFile(context, packageName, bitmap);
             return bitmap;
@@ -270,33 +732,54 @@ public class AppManager {
         return iconCache.get(packageName);
     }
 
-    public static boolean hasCachedApps() {
-        return cachedAllApps != null;
+    // Счётчики попаданий, промахов и вытеснений кэша иконок
+    public static String getIconCacheStats() {
+        return iconCache.getStats() + ", coalesced=" + coalescedIconLoads.get()
+                + "; pool: " + BitmapPool.getInstance().getStats() + "; prefetch: " + IconPrefetcher.getStats();
+    }
+
+    // Иконка из кэша, сразу удержанная для показа: пока её не отпустят через releaseIcon, пул её не переиспользует
+    public static Bitmap acquireCachedIcon(String packageName) {
+        return BitmapPool.getInstance().acquire(() -> iconCache.get(packageName));
+    }
+
+    // Загрузка с удержанием (фоновый поток). Загруженный битмап удерживается только через кэш:
+    // если его успели вытеснить, он мог уже уйти в пул, поэтому загрузка повторяется
+    public static Bitmap acquireIcon(Context context, String packageName) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Bitmap bitmap = acquireCachedIcon(packageName);
+            if (bitmap != null) return bitmap;
+            if (loadIconBitmap(context, packageName) == null) return null;
+        }
+        return acquireCachedIcon(packageName);
     }
 
-    private static String detectCategory(String packageName, String appName) {
-        String lower = (packageName + " " + appName).toLowerCase();
-        if (lower.contains("game") || lower.contains("play") || lower.contains("casino") ||
-                lower.contains("puzzle") || lower.contains("word") || lower.contains("match") ||
-                lower.contains("arcade") || lower.contains("adventure") || lower.contains("rpg") ||
-                lower.contains("strategy")) return "Games";
-        if (lower.contains("facebook") || lower.contains("instagram") || lower.contains("twitter") ||
-                lower.contains("tiktok") || lower.contains("snapchat") || lower.contains("telegram") ||
-                lower.contains("whatsapp") || lower.contains("vk") || lower.contains("vkontakte") ||
-                lower.contains("messenger") || lower.contains("discord") || lower.contains("reddit") ||
-                lower.contains("linkedin")) return "Social";
-        if (lower.contains("doc") || lower.contains("sheet") || lower.contains("slide") ||
-                lower.contains("word") || lower.contains("excel") || lower.contains("pdf") ||
-                lower.contains("office") || lower.contains("drive") || lower.contains("mail") ||
-                lower.contains("outlook") || lower.contains("calendar") || lower.contains("note") ||
-                lower.contains("task") || lower.contains("meeting") || lower.contains("zoom") ||
-                lower.contains("teams")) return "Work";
-        return "Other";
+    public static void releaseIcon(Bitmap bitmap) {
+        BitmapPool.getInstance().release(bitmap);
+    }
+
+    // Пакеты вкладки в порядке показа, без ожидания сканирования; пусто, если кэш ещё не загружен
+    public static List<String> getCachedPackages(String category) {
+        if (cachedAllApps == null) return new ArrayList<>();
+        List<AppInfo> apps = category == null || category.equals("All") ? registry.getAll() : registry.getByAutoCategory(category);
+        List<String> packages = new ArrayList<>(apps.size());
+        for (AppInfo app : apps) packages.add(app.getPackageName());
+        return packages;
+    }
+
+    public static String getQueryStats() {
+        return registry.getQueryStats();
+    }
+
+    public static boolean hasCachedApps() {
+        return cachedAllApps != null;
     }
 
     public static void clearCache() {
-        cachedAllApps = null;
-        categoryCache.clear();
+        synchronized (cacheLock) {
+            cachedAllApps = null;
+            registry.setAll(new ArrayList<>());
+        }
         iconCache.evictAll();
     }
 }
\ No newline at end of file
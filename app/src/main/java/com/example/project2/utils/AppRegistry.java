@@ -0,0 +1,212 @@
+package com.example.project2.utils;
+
+import com.example.project2.models.AppInfo;
+import com.example.project2.models.AppQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Индексы списка приложений: по имени пакета, по автокатегории и по пользовательской категории.
+// Обновляются по одному приложению, поэтому поиск и выборка категории не требуют прохода по всему списку.
+// Новый список индексируется при первом обращении, чтобы не декодировать снимок кэша заранее.
+// Результаты AppQuery запоминаются и поддерживаются по одному приложению при любых изменениях.
+public class AppRegistry {
+    // Каждый запомненный запрос обновляется при любом изменении, поэтому хранятся только недавние
+    private static final int MAX_VIEWS = 32;
+
+    private List<AppInfo> pending;
+    private final Set<AppInfo> all = new LinkedHashSet<>();
+    private final Map<String, List<AppInfo>> byPackage = new HashMap<>();
+    private final Map<String, Set<AppInfo>> byAutoCategory = new HashMap<>();
+    private final Map<Integer, Set<AppInfo>> byUserCategory = new HashMap<>();
+    private final Map<AppQuery, QueryView> views = new LinkedHashMap<AppQuery, QueryView>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AppQuery, QueryView> eldest) {
+            return size() > MAX_VIEWS;
+        }
+    };
+    private int queryHits;
+    private int queryMisses;
+
+    // Запомненный результат запроса; неизменяемая копия строится при первом чтении после изменения
+    private static class QueryView {
+        final Set<AppInfo> items = new LinkedHashSet<>();
+        List<AppInfo> snapshot;
+    }
+
+    public synchronized void setAll(List<AppInfo> apps) {
+        all.clear();
+        byPackage.clear();
+        byAutoCategory.clear();
+        byUserCategory.clear();
+        views.clear();
+        pending = apps;
+    }
+
+    public synchronized void add(AppInfo app) {
+        ensureIndexed();
+        addLocked(app);
+    }
+
+    // Заменяет все записи пакетов (у пакета может быть несколько launcher-активностей) одним шагом:
+    // читатели не видят пакет удалённым или записанным дважды
+    public synchronized void replacePackages(Collection<String> packageNames, List<AppInfo> apps) {
+        ensureIndexed();
+        for (String packageName : packageNames) removePackageLocked(packageName);
+        for (AppInfo app : apps) addLocked(app);
+    }
+
+    private void removePackageLocked(String packageName) {
+        List<AppInfo> apps = byPackage.remove(packageName);
+        if (apps == null) return;
+        for (AppInfo app : apps) {
+            all.remove(app);
+            for (QueryView view : views.values()) {
+                if (view.items.remove(app)) view.snapshot = null;
+            }
+            Set<AppInfo> auto = byAutoCategory.get(app.getAutoCategory());
+            if (auto != null) auto.remove(app);
+            for (int id : app.getUserCategoryIds()) {
+                Set<AppInfo> user = byUserCategory.get(id);
+                if (user != null) user.remove(app);
+            }
+        }
+    }
+
+    public synchronized AppInfo get(String packageName) {
+        ensureIndexed();
+        List<AppInfo> apps = byPackage.get(packageName);
+        return apps != null && !apps.isEmpty() ? apps.get(0) : null;
+    }
+
+    public synchronized List<AppInfo> getAll() {
+        ensureIndexed();
+        return new ArrayList<>(all);
+    }
+
+    public synchronized List<AppInfo> getByAutoCategory(String category) {
+        ensureIndexed();
+        Set<AppInfo> apps = byAutoCategory.get(category);
+        return apps != null ? new ArrayList<>(apps) : new ArrayList<>();
+    }
+
+    public synchronized List<AppInfo> getByUserCategory(int categoryId) {
+        ensureIndexed();
+        Set<AppInfo> apps = byUserCategory.get(categoryId);
+        return apps != null ? new ArrayList<>(apps) : new ArrayList<>();
+    }
+
+    public synchronized List<AppInfo> query(AppQuery query) {
+        ensureIndexed();
+        QueryView view = views.get(query);
+        if (view == null) {
+            queryMisses++;
+            view = new QueryView();
+            view.items.addAll(evaluate(query));
+            views.put(query, view);
+        } else if (view.snapshot != null) {
+            queryHits++;
+            return view.snapshot;
+        }
+        view.snapshot = Collections.unmodifiableList(new ArrayList<>(view.items));
+        return view.snapshot;
+    }
+
+    public synchronized String getQueryStats() {
+        return "queries=" + views.size() + ", hits=" + queryHits + ", misses=" + queryMisses;
+    }
+
+    // Полный расчёт только при первом запросе; простые запросы берутся из индексов
+    private Collection<AppInfo> evaluate(AppQuery query) {
+        switch (query.getType()) {
+            case AppQuery.ALL: return all;
+            case AppQuery.AUTO_CATEGORY: {
+                Set<AppInfo> apps = byAutoCategory.get(query.getAutoCategory());
+                return apps != null ? apps : Collections.emptySet();
+            }
+            case AppQuery.USER_CATEGORY: {
+                Set<AppInfo> apps = byUserCategory.get(query.getUserCategoryId());
+                return apps != null ? apps : Collections.emptySet();
+            }
+            default: {
+                List<AppInfo> result = new ArrayList<>();
+                for (AppInfo app : all) if (query.matches(app)) result.add(app);
+                return result;
+            }
+        }
+    }
+
+    // Приложение изменило членство: пересчитываем его попадание в каждый запомненный запрос
+    private void updateViews(AppInfo app) {
+        for (Map.Entry<AppQuery, QueryView> entry : views.entrySet()) {
+            QueryView view = entry.getValue();
+            boolean changed = entry.getKey().matches(app) ? view.items.add(app) : view.items.remove(app);
+            if (changed) view.snapshot = null;
+        }
+    }
+
+    public synchronized void onAppAddedToCategory(String packageName, int categoryId) {
+        ensureIndexed();
+        List<AppInfo> apps = byPackage.get(packageName);
+        if (apps == null) return;
+        Set<AppInfo> members = byUserCategory.get(categoryId);
+        if (members == null) { members = new LinkedHashSet<>(); byUserCategory.put(categoryId, members); }
+        for (AppInfo app : apps) {
+            app.addToUserCategory(categoryId);
+            members.add(app);
+            updateViews(app);
+        }
+    }
+
+    public synchronized void onAppRemovedFromCategory(String packageName, int categoryId) {
+        ensureIndexed();
+        List<AppInfo> apps = byPackage.get(packageName);
+        if (apps == null) return;
+        Set<AppInfo> members = byUserCategory.get(categoryId);
+        for (AppInfo app : apps) {
+            app.removeFromUserCategory(categoryId);
+            if (members != null) members.remove(app);
+            updateViews(app);
+        }
+    }
+
+    public synchronized void onCategoryDeleted(int categoryId) {
+        ensureIndexed();
+        Set<AppInfo> members = byUserCategory.remove(categoryId);
+        if (members == null) return;
+        for (AppInfo app : members) {
+            app.removeFromUserCategory(categoryId);
+            updateViews(app);
+        }
+    }
+
+    private void ensureIndexed() {
+        if (pending == null) return;
+        List<AppInfo> apps = pending;
+        pending = null;
+        for (AppInfo app : apps) addLocked(app);
+    }
+
+    private void addLocked(AppInfo app) {
+        all.add(app);
+        updateViews(app);
+        List<AppInfo> samePackage = byPackage.get(app.getPackageName());
+        if (samePackage == null) { samePackage = new ArrayList<>(1); byPackage.put(app.getPackageName(), samePackage); }
+        samePackage.add(app);
+        Set<AppInfo> auto = byAutoCategory.get(app.getAutoCategory());
+        if (auto == null) { auto = new LinkedHashSet<>(); byAutoCategory.put(app.getAutoCategory(), auto); }
+        auto.add(app);
+        for (int id : app.getUserCategoryIds()) {
+            Set<AppInfo> user = byUserCategory.get(id);
+            if (user == null) { user = new LinkedHashSet<>(); byUserCategory.put(id, user); }
+            user.add(app);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+
+import com.example.project2.models.AppCatalog;
+import com.example.project2.models.AppInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Бинарный снимок списка приложений вместо JSON-строки в SharedPreferences.
+// Формат: заголовок (magic, версия, номер последовательности, счётчик загрузок, число записей),
+// таблица смещений записей и сами записи (пакет, название, автокатегория в UTF-8 с длиной, длина -1 — null;
+// с версии 2 — отметка иконки). Снимок версии 1 читается с нулевыми отметками.
+// При чтении проверяются все смещения и длины: повреждённый или обрезанный снимок считается отсутствующим.
+// Файл отображается в память, запись декодируется при первом обращении к ней в общий каталог списка.
+public class AppSnapshotStore {
+    private static final String FILE_NAME = "apps.snapshot";
+    private static final int MAGIC = 0x41505053; // "APPS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+
+    public static class Snapshot {
+        private final ByteBuffer buffer;
+        private final int sequenceNumber;
+        private final int bootCount;
+        private final int count;
+        private final boolean hasIconStamps;
+
+        private Snapshot(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.hasIconStamps = buffer.getInt(4) >= 2;
+            this.sequenceNumber = buffer.getInt(8);
+            this.bootCount = buffer.getInt(12);
+            this.count = buffer.getInt(16);
+        }
+
+        public int getSequenceNumber() { return sequenceNumber; }
+        public int getBootCount() { return bootCount; }
+        public int size() { return count; }
+
+        // Запись декодируется сразу в строку каталога
+        public AppInfo decode(int index, AppCatalog catalog) {
+            int[] position = { buffer.getInt(HEADER_SIZE + index * 4) };
+            String packageName = readString(position);
+            String appName = readString(position);
+            String autoCategory = readString(position);
+            long iconStamp = hasIconStamps ? buffer.getLong(position[0]) : 0;
+            return catalog.set(index, packageName, appName, autoCategory, iconStamp);
+        }
+
+        // Список, декодирующий записи по требованию; onDecoded вызывается один раз для каждой записи
+        public List<AppInfo> asList(Consumer<AppInfo> onDecoded) {
+            return new LazyAppList(this, onDecoded);
+        }
+
+        // Каждая запись целиком лежит в файле; тогда decode не выйдет за границы буфера
+        private boolean isValid() {
+            int limit = buffer.limit();
+            int base = HEADER_SIZE + count * 4;
+            for (int i = 0; i < count; i++) {
+                long position = buffer.getInt(HEADER_SIZE + i * 4);
+                if (position < base) return false;
+                for (int field = 0; field < 3; field++) {
+                    if (position + 4 > limit) return false;
+                    int length = buffer.getInt((int) position);
+                    if (length < (field == 0 ? 0 : -1)) return false; // у пакета всегда есть имя
+                    position += 4 + Math.max(length, 0);
+                }
+                if (hasIconStamps) position += 8;
+                if (position > limit) return false;
+            }
+            return true;
+        }
+
+        private String readString(int[] position) {
+            int length = buffer.getInt(position[0]);
+            if (length < 0) {
+                position[0] += 4;
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position[0] + 4);
+            view.get(bytes);
+            position[0] += 4 + length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class LazyAppList extends AbstractList<AppInfo> {
+        private final Snapshot snapshot;
+        private final Consumer<AppInfo> onDecoded;
+        private final AppInfo[] decoded;
+        private final AppCatalog catalog;
+
+        LazyAppList(Snapshot snapshot, Consumer<AppInfo> onDecoded) {
+            this.snapshot = snapshot;
+            this.onDecoded = onDecoded;
+            this.decoded = new AppInfo[snapshot.size()];
+            this.catalog = new AppCatalog(snapshot.size());
+        }
+
+        @Override
+        public synchronized AppInfo get(int index) {
+            AppInfo app = decoded[index];
+            if (app == null) {
+                app = snapshot.decode(index, catalog);
+                if (onDecoded != null) onDecoded.accept(app);
+                decoded[index] = app;
+            }
+            return app;
+        }
+
+        @Override
+        public int size() {
+            return decoded.length;
+        }
+    }
+
+    public static boolean exists(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME).exists();
+    }
+
+    public static Snapshot read(Context context) {
+        return read(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public static Snapshot read(File file) {
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE) return null;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION) return null;
+            Snapshot snapshot = new Snapshot(buffer);
+            if (snapshot.size() < 0 || HEADER_SIZE + (long) snapshot.size() * 4 > channel.size()) return null;
+            return snapshot.isValid() ? snapshot : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Запись во временный файл и атомарная замена переименованием: читатель видит либо старый, либо новый снимок
+    public static void write(Context context, List<AppInfo> apps, int sequenceNumber, int bootCount) {
+        write(new File(context.getFilesDir(), FILE_NAME), apps, sequenceNumber, bootCount);
+    }
+
+    public static synchronized void write(File file, List<AppInfo> apps, int sequenceNumber, int bootCount) {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        int count = apps.size();
+        int[] offsets = new int[count];
+        ByteArrayOutputStream records = new ByteArrayOutputStream(count * 64);
+        int base = HEADER_SIZE + count * 4;
+        try {
+            DataOutputStream recordOut = new DataOutputStream(records);
+            for (int i = 0; i < count; i++) {
+                AppInfo app = apps.get(i);
+                offsets[i] = base + recordOut.size();
+                writeString(recordOut, app.getPackageName());
+                writeString(recordOut, app.getAppName());
+                writeString(recordOut, app.getAutoCategory());
+                recordOut.writeLong(app.getIconStamp());
+            }
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sequenceNumber);
+                out.writeInt(bootCount);
+                out.writeInt(count);
+                for (int offset : offsets) out.writeInt(offset);
+                records.writeTo(out);
+                out.flush();
+                fos.getFD().sync();
+            }
+            if (!tmp.renameTo(file)) throw new IOException("rename failed: " + tmp);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.project2.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+// Пул изменяемых битмапов, сгруппированных по размеру. Источник — иконки, вытесненные из кэша;
+// потребители — декодирование (BitmapFactory.Options.inBitmap) и растеризация.
+// Битмап, который сейчас показан где-то (retain), в пул не попадает до release.
+// Поиск в кэше и удержание выполняются вместе (acquire), иначе битмап могут вытеснить и отдать в пул между ними.
+public class BitmapPool {
+    private static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static BitmapPool instance;
+
+    private final Map<Long, ArrayDeque<Bitmap>> pool = new HashMap<>();
+    private final WeakHashMap<Bitmap, Integer> retained = new WeakHashMap<>();
+    private final WeakHashMap<Bitmap, Boolean> evicted = new WeakHashMap<>();
+    private int maxBytes = DEFAULT_MAX_BYTES;
+    private int currentBytes;
+    private long requests;
+    private long reuses;
+    private long returned;
+    private long rejected;
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) instance = new BitmapPool();
+        return instance;
+    }
+
+    public synchronized void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+        trimTo(maxBytes);
+    }
+
+    // Очищенный битмап нужного размера или null, если подходящего нет
+    public synchronized Bitmap get(int width, int height) {
+        requests++;
+        ArrayDeque<Bitmap> bucket = pool.get(key(width, height));
+        Bitmap bitmap = bucket != null ? bucket.pollFirst() : null;
+        if (bitmap == null) return null;
+        currentBytes -= bitmap.getAllocationByteCount();
+        reuses++;
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    // Битмап, вытесненный из кэша; если он ещё показан, попадёт в пул после последнего release
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) { rejected++; return; }
+        if (retained.containsKey(bitmap)) { evicted.put(bitmap, Boolean.TRUE); return; }
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) { rejected++; return; }
+        ArrayDeque<Bitmap> bucket = pool.get(key(bitmap.getWidth(), bitmap.getHeight()));
+        if (bucket == null) { bucket = new ArrayDeque<>(); pool.put(key(bitmap.getWidth(), bitmap.getHeight()), bucket); }
+        for (Bitmap b : bucket) if (b == bitmap) return;
+        bucket.addFirst(bitmap);
+        currentBytes += size;
+        returned++;
+        trimTo(maxBytes);
+    }
+
+    // lookup выполняется под замком пула: вытеснение из кэша (put) не может вклиниться до удержания
+    public synchronized Bitmap acquire(Supplier<Bitmap> lookup) {
+        Bitmap bitmap = lookup.get();
+        retain(bitmap);
+        return bitmap;
+    }
+
+    public synchronized void retain(Bitmap bitmap) {
+        if (bitmap == null) return;
+        Integer count = retained.get(bitmap);
+        retained.put(bitmap, count == null ? 1 : count + 1);
+        // Удерживаемый битмап не должен оставаться в пуле
+        ArrayDeque<Bitmap> bucket = pool.get(key(bitmap.getWidth(), bitmap.getHeight()));
+        if (bucket != null && bucket.removeFirstOccurrence(bitmap)) currentBytes -= bitmap.getAllocationByteCount();
+    }
+
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) return;
+        Integer count = retained.get(bitmap);
+        if (count == null) return;
+        if (count > 1) { retained.put(bitmap, count - 1); return; }
+        retained.remove(bitmap);
+        if (evicted.remove(bitmap) != null) put(bitmap);
+    }
+
+    public synchronized void clear() {
+        pool.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized String getStats() {
+        int rate = requests > 0 ? (int) (reuses * 100 / requests) : 0;
+        return "pooled=" + currentBytes / 1024 + "KB/" + maxBytes / 1024 + "KB, requests=" + requests
+                + ", reused=" + reuses + " (" + rate + "%), returned=" + returned + ", rejected=" + rejected;
+    }
+
+    private void trimTo(int limit) {
+        for (ArrayDeque<Bitmap> bucket : pool.values()) {
+            while (currentBytes > limit && !bucket.isEmpty()) {
+                currentBytes -= bucket.pollLast().getAllocationByteCount();
+            }
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+
+import com.example.project2.R;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Определение автокатегории по правилам из res/raw/category_rules.txt (или files/category_rules.txt, если он есть).
+// Слова всех правил собраны в автомат Ахо-Корасик, префиксы пакетов — в префиксное дерево,
+// поэтому "пакет название" проходится один раз. Результат кэшируется по пакету и versionCode.
+public class CategoryClassifier {
+    public static final String DEFAULT_CATEGORY = "Other";
+    private static final String OVERRIDE_FILE = "category_rules.txt";
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static CategoryClassifier instance;
+
+    private final List<String> ruleCategories = new ArrayList<>();
+    private final Automaton keywords = new Automaton();
+    private final Automaton prefixes = new Automaton();
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+
+    private static class CachedResult {
+        final long versionCode;
+        final String appName;
+        final String category;
+
+        CachedResult(long versionCode, String appName, String category) {
+            this.versionCode = versionCode;
+            this.appName = appName;
+            this.category = category;
+        }
+    }
+
+    public static synchronized CategoryClassifier getInstance(Context context) {
+        if (instance == null) instance = load(context);
+        return instance;
+    }
+
+    // Перечитать правила после замены файла в files/
+    public static synchronized void reload(Context context) {
+        instance = load(context);
+    }
+
+    private static CategoryClassifier load(Context context) {
+        File override = new File(context.getFilesDir(), OVERRIDE_FILE);
+        if (override.isFile()) {
+            try (InputStream in = new FileInputStream(override)) {
+                return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException | IllegalArgumentException e) { e.printStackTrace(); }
+        }
+        try (InputStream in = context.getResources().openRawResource(R.raw.category_rules)) {
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать правила категорий", e);
+        }
+    }
+
+    public static CategoryClassifier parse(Reader source) throws IOException {
+        CategoryClassifier classifier = new CategoryClassifier();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length < 3) throw new IllegalArgumentException("Неверное правило: " + line);
+            int rank = classifier.ruleCategories.size();
+            classifier.ruleCategories.add(parts[0]);
+            Automaton target;
+            if (parts[1].equals("contains")) target = classifier.keywords;
+            else if (parts[1].equals("prefix")) target = classifier.prefixes;
+            else throw new IllegalArgumentException("Неизвестный тип правила: " + parts[1]);
+            for (int i = 2; i < parts.length; i++) target.add(parts[i].toLowerCase(), rank);
+        }
+        classifier.keywords.compile(true);
+        classifier.prefixes.compile(false);
+        return classifier;
+    }
+
+    // versionCode < 0 — без кэша
+    public String classify(String packageName, String appName, long versionCode) {
+        if (versionCode >= 0) {
+            CachedResult cached = cache.get(packageName);
+            if (cached != null && cached.versionCode == versionCode && equalsNullable(cached.appName, appName)) {
+                return cached.category;
+            }
+        }
+        String category = classify(packageName, appName);
+        if (versionCode >= 0) cache.put(packageName, new CachedResult(versionCode, appName, category));
+        return category;
+    }
+
+    // Один проход по "<пакет> <название>" без склейки строки; выход сразу, как только сработало первое правило
+    public String classify(String packageName, String appName) {
+        int best = prefixes.matchPrefix(packageName);
+        String name = String.valueOf(appName);
+        int packageLength = packageName.length();
+        int length = packageLength + 1 + name.length();
+        int state = 0;
+        for (int i = 0; i < length && best > 0; i++) {
+            char c = i < packageLength ? packageName.charAt(i) : i == packageLength ? ' ' : name.charAt(i - packageLength - 1);
+            state = keywords.step(state, Character.toLowerCase(c));
+            best = Math.min(best, keywords.rank[state]);
+        }
+        return best == NO_MATCH ? DEFAULT_CATEGORY : ruleCategories.get(best);
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Бор, скомпилированный в таблицу переходов state * alphabetSize + symbol. Алфавит — только символы из правил,
+    // остальные символы сводятся к символу 0 (переход в корень). В режиме Ахо-Корасик недостающие переходы
+    // заполнены по суффиксным ссылкам, поэтому шаг — одно чтение из массива.
+    // rank[state] — лучший (наименьший) номер правила среди слов, заканчивающихся в этом состоянии.
+    private static class Automaton {
+        private final List<TreeMap<Character, Integer>> building = new ArrayList<>();
+        private final List<Integer> buildingRank = new ArrayList<>();
+        private final byte[] asciiSymbols = new byte[128];
+        private char[] otherChars = new char[0];
+        private int[] otherSymbols = new int[0];
+        private int alphabetSize;
+        private int[] delta;
+        int[] rank;
+
+        Automaton() {
+            building.add(new TreeMap<>());
+            buildingRank.add(NO_MATCH);
+        }
+
+        void add(String word, int ruleRank) {
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                Integer next = building.get(node).get(word.charAt(i));
+                if (next == null) {
+                    next = building.size();
+                    building.add(new TreeMap<>());
+                    buildingRank.add(NO_MATCH);
+                    building.get(node).put(word.charAt(i), next);
+                }
+                node = next;
+            }
+            buildingRank.set(node, Math.min(buildingRank.get(node), ruleRank));
+        }
+
+        // withFailLinks = false — обычное префиксное дерево: недостающий переход ведёт в -1
+        void compile(boolean withFailLinks) {
+            TreeMap<Character, Integer> alphabet = new TreeMap<>();
+            for (TreeMap<Character, Integer> edges : building) {
+                for (Character c : edges.keySet()) if (!alphabet.containsKey(c)) alphabet.put(c, alphabet.size() + 1);
+            }
+            if (alphabet.size() > Byte.MAX_VALUE) throw new IllegalArgumentException("Слишком много разных символов в правилах");
+            alphabetSize = alphabet.size() + 1;
+            List<Character> other = new ArrayList<>();
+            for (Map.Entry<Character, Integer> e : alphabet.entrySet()) {
+                if (e.getKey() < 128) asciiSymbols[e.getKey()] = (byte) (int) e.getValue();
+                else other.add(e.getKey());
+            }
+            otherChars = new char[other.size()];
+            otherSymbols = new int[other.size()];
+            for (int i = 0; i < other.size(); i++) {
+                otherChars[i] = other.get(i);
+                otherSymbols[i] = alphabet.get(other.get(i));
+            }
+
+            int size = building.size();
+            delta = new int[size * alphabetSize];
+            Arrays.fill(delta, withFailLinks ? 0 : -1);
+            rank = new int[size];
+            for (int node = 0; node < size; node++) {
+                for (Map.Entry<Character, Integer> e : building.get(node).entrySet()) {
+                    delta[node * alphabetSize + alphabet.get(e.getKey())] = e.getValue();
+                }
+                rank[node] = buildingRank.get(node);
+            }
+            if (withFailLinks) {
+                // Обход в ширину: недостающий переход берётся у суффиксной ссылки, ранг наследуется по ней
+                int[] fail = new int[size];
+                ArrayDeque<Integer> queue = new ArrayDeque<>(building.get(0).values());
+                while (!queue.isEmpty()) {
+                    int node = queue.poll();
+                    for (int a = 1; a < alphabetSize; a++) {
+                        int index = node * alphabetSize + a;
+                        int fallback = delta[fail[node] * alphabetSize + a];
+                        int child = delta[index];
+                        if (child != 0 && building.get(node).containsValue(child)) {
+                            fail[child] = node == 0 ? 0 : fallback;
+                            rank[child] = Math.min(rank[child], rank[fail[child]]);
+                            queue.add(child);
+                        } else if (node != 0) {
+                            delta[index] = fallback;
+                        }
+                    }
+                }
+            }
+            building.clear();
+            buildingRank.clear();
+        }
+
+        int symbol(char c) {
+            if (c < 128) return asciiSymbols[c];
+            int i = Arrays.binarySearch(otherChars, c);
+            return i >= 0 ? otherSymbols[i] : 0;
+        }
+
+        int step(int state, char c) {
+            return delta[state * alphabetSize + symbol(c)];
+        }
+
+        int matchPrefix(String text) {
+            int best = rank[0];
+            int node = 0;
+            for (int i = 0; i < text.length() && best > 0; i++) {
+                node = delta[node * alphabetSize + symbol(Character.toLowerCase(text.charAt(i)))];
+                if (node < 0) break;
+                best = Math.min(best, rank[node]);
+            }
+            return best;
+        }
+    }
+}
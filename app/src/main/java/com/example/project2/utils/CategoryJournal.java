@@ -0,0 +1,274 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Журнал изменений категорий: каждое изменение — маленькая запись в конце файла вместо перезаписи всех категорий.
+// Записи копятся в памяти и сбрасываются на диск фоновым потоком с задержкой; когда журнал вырастает,
+// состояние целиком сохраняется снимком и журнал обнуляется. При загрузке журнал проигрывается поверх снимка.
+// Все операции идемпотентны, поэтому повторное проигрывание записей, уже попавших в снимок, безопасно.
+public class CategoryJournal {
+    private static final String FILE_NAME = "category_journal.log";
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final int COMPACT_BYTES = 32 * 1024;
+    // Защита от мусора в длине рамки после сбоя
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private static final byte OP_ADD_APP = 1;
+    private static final byte OP_REMOVE_APP = 2;
+    private static final byte OP_PUT_CATEGORY = 3;
+    private static final byte OP_DELETE_CATEGORY = 4;
+    // Несколько записей в одной рамке: пакет изменений применяется при загрузке целиком или не применяется вовсе
+    private static final byte OP_BATCH = 5;
+
+    // Получатель записей при проигрывании журнала
+    public interface Replayer {
+        void addApp(String packageName, int categoryId);
+        void removeApp(String packageName, int categoryId);
+        void putCategory(int id, String name, int color, boolean builtIn);
+        void deleteCategory(int id);
+    }
+
+    private final File file;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    private final Object lock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private ScheduledFuture<?> scheduledFlush;
+    private long journalBytes;
+
+    public CategoryJournal(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public CategoryJournal(File file) {
+        this.file = file;
+    }
+
+    // Проигрывает целые записи; оборванный хвост (сбой во время записи) отбрасывается и обрезается
+    public int replay(Replayer replayer) {
+        if (!file.isFile()) return 0;
+        int count = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                long crc = in.readInt() & 0xFFFFFFFFL;
+                if (crc != crc(payload)) break;
+                apply(payload, replayer);
+                validLength += 8 + length;
+                count++;
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) { e.printStackTrace(); }
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+        journalBytes = validLength;
+        return count;
+    }
+
+    public void addApp(String packageName, int categoryId) {
+        begin().addApp(packageName, categoryId).commit();
+    }
+
+    public void removeApp(String packageName, int categoryId) {
+        begin().removeApp(packageName, categoryId).commit();
+    }
+
+    public void putCategory(int id, String name, int color, boolean builtIn) {
+        begin().putCategory(id, name, color, builtIn).commit();
+    }
+
+    public void deleteCategory(int id) {
+        begin().deleteCategory(id).commit();
+    }
+
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    // Записи копятся и добавляются в журнал одной рамкой при commit
+    public class Transaction {
+        private final List<byte[]> records = new ArrayList<>();
+
+        public Transaction addApp(String packageName, int categoryId) {
+            return add(OP_ADD_APP, out -> { out.writeUTF(packageName); out.writeInt(categoryId); });
+        }
+
+        public Transaction removeApp(String packageName, int categoryId) {
+            return add(OP_REMOVE_APP, out -> { out.writeUTF(packageName); out.writeInt(categoryId); });
+        }
+
+        public Transaction putCategory(int id, String name, int color, boolean builtIn) {
+            return add(OP_PUT_CATEGORY, out -> {
+                out.writeInt(id);
+                out.writeUTF(name != null ? name : "");
+                out.writeInt(color);
+                out.writeBoolean(builtIn);
+            });
+        }
+
+        public Transaction deleteCategory(int id) {
+            return add(OP_DELETE_CATEGORY, out -> out.writeInt(id));
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+
+        public void commit() {
+            if (records.isEmpty()) return;
+            if (records.size() == 1) {
+                appendFrame(records.get(0));
+                return;
+            }
+            appendFrame(encode(OP_BATCH, out -> {
+                out.writeInt(records.size());
+                for (byte[] record : records) {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }));
+        }
+
+        private Transaction add(byte op, RecordWriter body) {
+            records.add(encode(op, body));
+            return this;
+        }
+    }
+
+    // Журнал достаточно вырос, чтобы заменить его снимком
+    public boolean needsCompaction() {
+        synchronized (lock) {
+            return journalBytes + pending.size() >= COMPACT_BYTES;
+        }
+    }
+
+    // writeSnapshot должен сохранить состояние, уже включающее все добавленные записи.
+    // Несброшенные записи отбрасываются, после снимка файл журнала обнуляется.
+    public void compact(Runnable writeSnapshot) {
+        synchronized (lock) {
+            pending = new ByteArrayOutputStream();
+            journalBytes = 0;
+            if (scheduledFlush != null) scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        writer.execute(() -> {
+            writeSnapshot.run();
+            try (FileOutputStream out = new FileOutputStream(file, false)) {
+                out.getFD().sync();
+            } catch (IOException e) { e.printStackTrace(); }
+        });
+    }
+
+    // Сбрасывает накопленные записи без задержки, не дожидаясь записи: после сохранения в диалоге
+    // и при уходе приложения в фон, чтобы правка не потерялась при завершении процесса
+    public void flushAsync() {
+        writer.execute(this::flush);
+    }
+
+    // Сбрасывает накопленные записи сразу и ждёт, пока поток журнала выполнит всё поставленное ранее (в т.ч. снимок)
+    public void sync() {
+        try {
+            writer.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) { e.printStackTrace(); }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(byte op, RecordWriter body) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(op);
+            body.write(out);
+            out.flush();
+            return payload.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void appendFrame(byte[] bytes) {
+        try {
+            synchronized (lock) {
+                DataOutputStream frame = new DataOutputStream(pending);
+                frame.writeInt(bytes.length);
+                frame.write(bytes);
+                frame.writeInt((int) crc(bytes));
+                frame.flush();
+                if (scheduledFlush == null) scheduledFlush = writer.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private void flush() {
+        byte[] data;
+        synchronized (lock) {
+            if (scheduledFlush != null) scheduledFlush.cancel(false);
+            scheduledFlush = null;
+            data = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            journalBytes += data.length;
+        }
+        if (data.length == 0) return;
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private static void apply(byte[] payload, Replayer replayer) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (in.readByte()) {
+            case OP_ADD_APP: replayer.addApp(in.readUTF(), in.readInt()); break;
+            case OP_REMOVE_APP: replayer.removeApp(in.readUTF(), in.readInt()); break;
+            case OP_PUT_CATEGORY: replayer.putCategory(in.readInt(), in.readUTF(), in.readInt(), in.readBoolean()); break;
+            case OP_DELETE_CATEGORY: replayer.deleteCategory(in.readInt()); break;
+            case OP_BATCH: {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    apply(record, replayer);
+                }
+                break;
+            }
+            default: throw new IOException("Неизвестная запись журнала");
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}
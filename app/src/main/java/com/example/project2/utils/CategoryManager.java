@@ -8,15 +8,25 @@ import androidx.lifecycle.MutableLiveData;
 
 import com.example.project2.models.AppInfo;
 import com.example.project2.models.Category;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.lang.reflect.Type;
+import com.example.project2.models.CategorySet;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+// Все изменения выполняются в одном потоке-писателе, который единолично владеет рабочим состоянием.
+// После каждого изменения публикуется новый неизменяемый снимок с номером версии; читатели
+// из любого потока берут его через volatile-ссылку без блокировок и всегда видят согласованное состояние.
 public class CategoryManager {
     private static final String PREFS_NAME = "category_prefs";
     private static final String KEY_CATEGORIES = "user_categories";
@@ -25,19 +35,56 @@ public class CategoryManager {
 
     private static CategoryManager instance;
     private Context context;
-    private List<Category> categories;
-    private Map<String, List<Integer>> appCategoryMap;
+    private final CategoryJournal journal;
+
+    // Рабочее состояние — только в потоке писателя. Опубликованные объекты Category и множества
+    // не изменяются: перед правкой категория копируется (editable), множество заменяется новым.
+    // Категории хранятся по id в порядке добавления; у каждой — счётчик приложений, который
+    // меняется на ±1 при каждом добавлении или удалении, поэтому пересчитывать его не нужно
+    private LinkedHashMap<Integer, Category> categories;
+    private Map<String, CategorySet> appCategoryMap;
+    private final Set<Integer> editableIds = new HashSet<>();
     private int nextId;
-    private Gson gson;
+
+    private volatile Thread writerThread;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "category-writer");
+        writerThread = t;
+        return t;
+    });
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
 
     private MutableLiveData<List<Category>> categoriesLiveData = new MutableLiveData<>(); // Для наблюдения
+    private final List<MembershipListener> membershipListeners = new CopyOnWriteArrayList<>();
+
+    // Точечные уведомления об изменении состава категорий (для индексов AppManager).
+    // Вызываются в потоке писателя после публикации снимка, в котором изменение уже есть
+    public interface MembershipListener {
+        void onAppAdded(String packageName, int categoryId);
+        void onAppRemoved(String packageName, int categoryId);
+        void onCategoryDeleted(int categoryId);
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final List<Category> categories;
+        final Map<Integer, Category> byId;
+        final Map<String, CategorySet> appCategoryMap;
+
+        Snapshot(long version, List<Category> categories, Map<Integer, Category> byId, Map<String, CategorySet> appCategoryMap) {
+            this.version = version;
+            this.categories = categories;
+            this.byId = byId;
+            this.appCategoryMap = appCategoryMap;
+        }
+    }
 
     private CategoryManager(Context context) {
         this.context = context.getApplicationContext();
-        this.gson = new Gson();
-        this.categories = new ArrayList<>();
+        this.categories = new LinkedHashMap<>();
         this.appCategoryMap = new HashMap<>();
-        loadCategories();
+        this.journal = new CategoryJournal(this.context);
+        write(() -> { loadCategories(); return null; });
     }
 
     public static synchronized CategoryManager getInstance(Context context) {
@@ -47,153 +94,384 @@ public class CategoryManager {
         return instance;
     }
 
+    // Записывает журнал на диск сейчас, а не через задержку
+    public void flushJournal() {
+        journal.flushAsync();
+    }
+
+    public void addMembershipListener(MembershipListener listener) {
+        membershipListeners.add(listener);
+    }
+
     // Возвращает LiveData для наблюдения
     public LiveData<List<Category>> getCategoriesLiveData() {
         return categoriesLiveData;
     }
 
+    // Номер версии растёт с каждым опубликованным изменением
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    // Выполняет изменение в потоке писателя и ждёт результата. Писатель работает только с памятью
+    // (диск — в потоке журнала), поэтому ожидание короткое и вызывающий сразу видит свои изменения
+    private <T> T write(Callable<T> task) {
+        try {
+            if (Thread.currentThread() == writerThread) return task.call();
+            Future<T> future = writer.submit(task);
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void loadCategories() {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
 
         String categoriesJson = prefs.getString(KEY_CATEGORIES, "");
         if (!categoriesJson.isEmpty()) {
             try {
-                Type type = new TypeToken<List<Category>>(){}.getType();
-                List<Category> loadedCategories = gson.fromJson(categoriesJson, type);
-                if (loadedCategories != null) categories = loadedCategories;
+                List<Category> loadedCategories = JsonAdapters.categoriesFromJson(categoriesJson);
+                for (Category cat : loadedCategories) categories.put(cat.getId(), cat);
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+
+        String appMapJson = prefs.getString(KEY_APP_CATEGORIES, "");
+        if (!appMapJson.isEmpty()) {
+            try {
+                Map<String, CategorySet> loaded = JsonAdapters.appCategoryMapFromJson(appMapJson);
+                for (Map.Entry<String, CategorySet> entry : loaded.entrySet()) {
+                    if (!entry.getValue().isEmpty()) appCategoryMap.put(entry.getKey(), entry.getValue());
+                }
             } catch (Exception e) { e.printStackTrace(); }
         }
 
+        nextId = prefs.getInt(KEY_NEXT_ID, 3);
+        // Изменения после последнего снимка
+        int replayed = journal.replay(new CategoryJournal.Replayer() {
+            @Override
+            public void addApp(String packageName, int categoryId) { applyAddApp(packageName, categoryId); }
+
+            @Override
+            public void removeApp(String packageName, int categoryId) { applyRemoveApp(packageName, categoryId); }
+
+            @Override
+            public void putCategory(int id, String name, int color, boolean builtIn) {
+                Category cat = editable(id);
+                if (cat == null) { cat = new Category(id, name); categories.put(id, cat); }
+                cat.setName(name);
+                cat.setColor(color);
+                cat.setBuiltIn(builtIn);
+                if (id >= nextId) nextId = id + 1;
+            }
+
+            @Override
+            public void deleteCategory(int id) { applyDeleteCategory(id); }
+        });
+
+        boolean createdDefaults = categories.isEmpty();
         if (categories.isEmpty()) {
             addDefaultCategory("Games", 0xFF4CAF50, true);
             addDefaultCategory("Social", 0xFF2196F3, true);
             addDefaultCategory("Work", 0xFFFF9800, true);
         } else {
-            for (Category cat : categories) {
+            for (Category cat : categories.values()) {
                 if (cat.getId() < 3 && ("Games".equals(cat.getName()) || "Social".equals(cat.getName()) || "Work".equals(cat.getName()))) {
                     cat.setBuiltIn(true);
                 }
             }
         }
 
-        String appMapJson = prefs.getString(KEY_APP_CATEGORIES, "");
-        if (!appMapJson.isEmpty()) {
-            try {
-                Type type = new TypeToken<Map<String, List<Integer>>>(){}.getType();
-                Map<String, List<Integer>> loadedMap = gson.fromJson(appMapJson, type);
-                if (loadedMap != null) appCategoryMap = loadedMap;
-            } catch (Exception e) { e.printStackTrace(); }
-        }
-
-        nextId = prefs.getInt(KEY_NEXT_ID, 3);
         int maxId = nextId - 1;
-        for (Category cat : categories) if (cat.getId() > maxId) maxId = cat.getId();
+        for (int id : categories.keySet()) if (id > maxId) maxId = id;
         if (maxId >= nextId) nextId = maxId + 1;
 
-        syncCategoriesWithAppMap();
-        saveCategories();
-        categoriesLiveData.setValue(new ArrayList<>(categories));
+        rebuildCounts();
+        publish();
+        if (replayed > 0 || createdDefaults) compact();
     }
 
-    private void syncCategoriesWithAppMap() {
-        for (Category cat : categories) cat.getPackageNames().clear();
-        for (Map.Entry<String, List<Integer>> entry : appCategoryMap.entrySet()) {
-            String pkg = entry.getKey();
-            for (Integer catId : entry.getValue()) {
-                Category cat = getCategory(catId);
-                if (cat != null) cat.addPackage(pkg);
-            }
+    // Счётчики после загрузки: один проход по приложениям, категория находится по id
+    private void rebuildCounts() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (CategorySet ids : appCategoryMap.values()) {
+            for (int id : ids.toIds()) counts.merge(id, 1, Integer::sum);
+        }
+        for (Category cat : categories.values()) {
+            Integer count = counts.get(cat.getId());
+            cat.setMemberCount(count != null ? count : 0);
         }
     }
 
-    private void saveCategories() {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit()
-                .putString(KEY_CATEGORIES, gson.toJson(categories))
-                .putString(KEY_APP_CATEGORIES, gson.toJson(appCategoryMap))
-                .putInt(KEY_NEXT_ID, nextId)
-                .apply();
-        categoriesLiveData.setValue(new ArrayList<>(categories));
+    // Публикует рабочее состояние новым снимком; LiveData обновляется через postValue из любого потока
+    private void publish() {
+        editableIds.clear();
+        List<Category> published = Collections.unmodifiableList(new ArrayList<>(categories.values()));
+        snapshot = new Snapshot(snapshot.version + 1, published, Collections.unmodifiableMap(new HashMap<>(categories)),
+                Collections.unmodifiableMap(new HashMap<>(appCategoryMap)));
+        categoriesLiveData.postValue(published);
+    }
+
+    // Изменение уже записано в журнал; снимок пишется, только когда журнал вырос
+    private void onChanged() {
+        publish();
+        if (journal.needsCompaction()) compact();
+    }
+
+    // Полный снимок в category_prefs: JSON собирается из опубликованного снимка, записывается в потоке журнала,
+    // после чего журнал обнуляется
+    private void compact() {
+        Snapshot current = snapshot;
+        String categoriesJson = JsonAdapters.categoriesToJson(current.categories);
+        String appMapJson = JsonAdapters.appCategoryMapToJson(current.appCategoryMap);
+        int snapshotNextId = nextId;
+        journal.compact(() -> context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_CATEGORIES, categoriesJson)
+                .putString(KEY_APP_CATEGORIES, appMapJson)
+                .putInt(KEY_NEXT_ID, snapshotNextId)
+                .commit());
     }
 
     private void addDefaultCategory(String name, int color, boolean builtIn) {
         Category cat = new Category(categories.size(), name);
         cat.setColor(color);
         cat.setBuiltIn(builtIn);
-        categories.add(cat);
+        categories.put(cat.getId(), cat);
     }
 
+    // Возвращает копию: новая категория уже опубликована и не должна меняться снаружи
     public Category createCategory(String name) {
+        return write(() -> {
+            Category cat = applyCreateCategory(name);
+            journal.putCategory(cat.getId(), cat.getName(), cat.getColor(), cat.isBuiltIn());
+            onChanged();
+            return new Category(cat);
+        });
+    }
+
+    private Category applyCreateCategory(String name) {
         Category cat = new Category(nextId, name);
         cat.setBuiltIn(false);
-        categories.add(cat);
+        categories.put(cat.getId(), cat);
         nextId++;
-        saveCategories();
         return cat;
     }
 
     public void deleteCategory(int categoryId) {
-        Category cat = getCategory(categoryId);
-        if (cat != null && cat.isBuiltIn()) return;
-        categories.removeIf(c -> c.getId() == categoryId);
-        for (List<Integer> ids : appCategoryMap.values()) ids.removeIf(id -> id == categoryId);
-        saveCategories();
+        write(() -> {
+            Category cat = categories.get(categoryId);
+            if (cat == null || cat.isBuiltIn()) return null;
+            applyDeleteCategory(categoryId);
+            journal.deleteCategory(categoryId);
+            onChanged();
+            for (MembershipListener l : membershipListeners) l.onCategoryDeleted(categoryId);
+            return null;
+        });
     }
 
-    public void updateCategory(Category category) {
-        for (int i = 0; i < categories.size(); i++) {
-            if (categories.get(i).getId() == category.getId()) {
-                categories.set(i, category);
-                break;
-            }
+    private void applyDeleteCategory(int categoryId) {
+        categories.remove(categoryId);
+        List<String> affected = new ArrayList<>();
+        for (Map.Entry<String, CategorySet> entry : appCategoryMap.entrySet()) {
+            if (entry.getValue().contains(categoryId)) affected.add(entry.getKey());
+        }
+        for (String pkg : affected) removeId(pkg, categoryId);
+    }
+
+    public void updateCategory(int categoryId, String name, int color) {
+        edit().updateCategory(categoryId, name, color).commit();
+    }
+
+    // Пакет изменений: применяется целиком при commit, одна запись в журнал и одно уведомление наблюдателям
+    public Batch edit() {
+        return new Batch();
+    }
+
+    // id категории, созданной в этом же пакете через Batch.createCategory; настоящий id выдаётся при commit
+    public static final int NEW_CATEGORY = -1;
+
+    public class Batch {
+        private final List<Op> ops = new ArrayList<>();
+
+        // Новая категория создаётся вместе с остальными изменениями пакета; в addApp/removeApp передаётся NEW_CATEGORY
+        public Batch createCategory(String name) {
+            ops.add(new Op(Op.CREATE, name, NEW_CATEGORY, 0));
+            return this;
+        }
+
+        public Batch addApp(String packageName, int categoryId) {
+            ops.add(new Op(Op.ADD, packageName, categoryId, 0));
+            return this;
+        }
+
+        public Batch removeApp(String packageName, int categoryId) {
+            ops.add(new Op(Op.REMOVE, packageName, categoryId, 0));
+            return this;
+        }
+
+        // Только имя и цвет: состав категории меняется через addApp/removeApp
+        public Batch updateCategory(int categoryId, String name, int color) {
+            ops.add(new Op(Op.UPDATE, name, categoryId, color));
+            return this;
+        }
+
+        // true, если что-то действительно изменилось
+        public boolean commit() {
+            List<Op> pending = new ArrayList<>(ops);
+            ops.clear();
+            return write(() -> {
+                CategoryJournal.Transaction tx = journal.begin();
+                List<Runnable> notifications = new ArrayList<>();
+                int createdId = NEW_CATEGORY;
+                for (Op op : pending) {
+                    int categoryId = op.categoryId == NEW_CATEGORY ? createdId : op.categoryId;
+                    if (op.type == Op.CREATE) {
+                        Category cat = applyCreateCategory(op.value);
+                        createdId = cat.getId();
+                        tx.putCategory(cat.getId(), cat.getName(), cat.getColor(), cat.isBuiltIn());
+                    } else if (categoryId == NEW_CATEGORY) {
+                        continue; // createCategory не вызывался
+                    } else if (op.type == Op.ADD) {
+                        if (!applyAddApp(op.value, categoryId)) continue;
+                        for (MembershipListener l : membershipListeners) notifications.add(() -> l.onAppAdded(op.value, categoryId));
+                        tx.addApp(op.value, categoryId);
+                    } else if (op.type == Op.REMOVE) {
+                        if (!applyRemoveApp(op.value, categoryId)) continue;
+                        for (MembershipListener l : membershipListeners) notifications.add(() -> l.onAppRemoved(op.value, categoryId));
+                        tx.removeApp(op.value, categoryId);
+                    } else {
+                        Category cat = applyUpdateCategory(categoryId, op.value, op.color);
+                        if (cat != null) tx.putCategory(cat.getId(), cat.getName(), cat.getColor(), cat.isBuiltIn());
+                    }
+                }
+                if (tx.isEmpty()) return false;
+                tx.commit();
+                onChanged();
+                for (Runnable notification : notifications) notification.run();
+                return true;
+            });
+        }
+    }
+
+    private static class Op {
+        static final int ADD = 0;
+        static final int REMOVE = 1;
+        static final int UPDATE = 2;
+        static final int CREATE = 3;
+
+        final int type;
+        final String value; // пакет для ADD/REMOVE, имя для UPDATE/CREATE
+        final int categoryId;
+        final int color;
+
+        Op(int type, String value, int categoryId, int color) {
+            this.type = type;
+            this.value = value;
+            this.categoryId = categoryId;
+            this.color = color;
         }
-        saveCategories();
+    }
+
+    // null, если категории нет или ничего не поменялось
+    private Category applyUpdateCategory(int categoryId, String name, int color) {
+        Category current = categories.get(categoryId);
+        if (current == null || (current.getName().equals(name) && current.getColor() == color)) return null;
+        Category cat = editable(categoryId);
+        cat.setName(name);
+        cat.setColor(color);
+        return cat;
     }
 
     public List<Category> getAllCategories() {
-        return new ArrayList<>(categories);
+        return new ArrayList<>(snapshot.categories);
     }
 
     public Category getCategory(int categoryId) {
-        for (Category cat : categories) if (cat.getId() == categoryId) return cat;
-        return null;
+        return snapshot.byId.get(categoryId);
     }
 
-    public void addAppToCategory(String packageName, int categoryId) {
-        List<Integer> ids = appCategoryMap.get(packageName);
-        if (ids == null) { ids = new ArrayList<>(); appCategoryMap.put(packageName, ids); }
-        if (!ids.contains(categoryId)) {
-            ids.add(categoryId);
-            Category cat = getCategory(categoryId);
-            if (cat != null) cat.addPackage(packageName);
-            saveCategories();
+    // Копия категории, которую можно менять до следующей публикации (копируется один раз за изменение)
+    private Category editable(int categoryId) {
+        Category cat = categories.get(categoryId);
+        if (cat != null && editableIds.add(categoryId)) {
+            cat = new Category(cat);
+            categories.put(categoryId, cat);
         }
+        return cat;
+    }
+
+    public void addAppToCategory(String packageName, int categoryId) {
+        edit().addApp(packageName, categoryId).commit();
     }
 
     public void removeAppFromCategory(String packageName, int categoryId) {
-        List<Integer> ids = appCategoryMap.get(packageName);
-        if (ids != null) {
-            ids.remove((Integer) categoryId);
-            if (ids.isEmpty()) appCategoryMap.remove(packageName);
-            Category cat = getCategory(categoryId);
-            if (cat != null) cat.removePackage(packageName);
-            saveCategories();
-        }
+        edit().removeApp(packageName, categoryId).commit();
+    }
+
+    private boolean applyAddApp(String packageName, int categoryId) {
+        CategorySet ids = appCategoryMap.get(packageName);
+        if (ids != null && ids.contains(categoryId)) return false;
+        CategorySet updated = ids != null ? new CategorySet(ids) : new CategorySet();
+        updated.add(categoryId);
+        appCategoryMap.put(packageName, updated);
+        Category cat = editable(categoryId);
+        if (cat != null) cat.setMemberCount(cat.getMemberCount() + 1);
+        return true;
+    }
+
+    private boolean applyRemoveApp(String packageName, int categoryId) {
+        if (!removeId(packageName, categoryId)) return false;
+        Category cat = editable(categoryId);
+        if (cat != null) cat.setMemberCount(cat.getMemberCount() - 1);
+        return true;
+    }
+
+    private boolean removeId(String packageName, int categoryId) {
+        CategorySet ids = appCategoryMap.get(packageName);
+        if (ids == null || !ids.contains(categoryId)) return false;
+        CategorySet updated = new CategorySet(ids);
+        updated.remove(categoryId);
+        if (updated.isEmpty()) appCategoryMap.remove(packageName);
+        else appCategoryMap.put(packageName, updated);
+        return true;
     }
 
     public List<Integer> getAppCategories(String packageName) {
-        List<Integer> ids = appCategoryMap.get(packageName);
-        return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+        CategorySet ids = snapshot.appCategoryMap.get(packageName);
+        return ids != null ? ids.toIds() : new ArrayList<>();
+    }
+
+    public boolean isAppInCategory(String packageName, int categoryId) {
+        CategorySet ids = snapshot.appCategoryMap.get(packageName);
+        return ids != null && ids.contains(categoryId);
+    }
+
+    // Копия множества категорий приложения для быстрых проверок и операций над множествами
+    public CategorySet getAppCategorySet(String packageName) {
+        CategorySet ids = snapshot.appCategoryMap.get(packageName);
+        return ids != null ? new CategorySet(ids) : new CategorySet();
     }
 
+    // Все приложения получают категории из одного снимка, даже если параллельно идёт запись
     public void updateAppsWithUserCategories(List<AppInfo> apps) {
+        Map<String, CategorySet> map = snapshot.appCategoryMap;
         for (AppInfo app : apps) {
-            app.setUserCategoryIds(getAppCategories(app.getPackageName()));
+            CategorySet ids = map.get(app.getPackageName());
+            app.setUserCategories(ids != null ? new CategorySet(ids) : new CategorySet());
         }
     }
 
     public int getAppsCountInCategory(int categoryId) {
         Category cat = getCategory(categoryId);
-        return cat != null ? cat.getPackageNames().size() : 0;
+        return cat != null ? cat.getMemberCount() : 0;
     }
-}
\ No newline at end of file
+}
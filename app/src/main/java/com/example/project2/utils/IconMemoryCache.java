@@ -0,0 +1,68 @@
+package com.example.project2.utils;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+// Кэш иконок в памяти с лимитом в байтах, а не в количестве записей.
+// Бюджет — доля memoryClass процесса; при нехватке памяти кэш ужимается или очищается по уровню onTrimMemory.
+// Вытесненные битмапы отдаются в BitmapPool для повторного использования.
+public class IconMemoryCache extends LruCache<String, Bitmap> implements ComponentCallbacks2 {
+    private static final int DEFAULT_BYTES = 4 * 1024 * 1024;
+
+    private int budgetBytes;
+
+    public IconMemoryCache() {
+        super(DEFAULT_BYTES);
+        budgetBytes = DEFAULT_BYTES;
+    }
+
+    // 1/8 memoryClass, на устройствах с малым объёмом RAM — 1/16
+    public void applyBudget(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int divider = am.isLowRamDevice() ? 16 : 8;
+        budgetBytes = am.getMemoryClass() * 1024 * 1024 / divider;
+        resize(budgetBytes);
+        BitmapPool.getInstance().setMaxBytes(budgetBytes / 4);
+    }
+
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+        return value.getAllocationByteCount();
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+        if (oldValue != newValue) BitmapPool.getInstance().put(oldValue);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) IconPrefetcher.backOff();
+        if (level >= TRIM_MEMORY_BACKGROUND) evictAll();
+        else if (level >= TRIM_MEMORY_UI_HIDDEN) trimToSize(budgetBytes / 2);
+        else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) trimToSize(budgetBytes / 4);
+        else if (level >= TRIM_MEMORY_RUNNING_LOW) trimToSize(budgetBytes / 2);
+        // Пул чистится после вытеснения: entryRemoved складывает вытесненные битмапы в пул
+        if (level >= TRIM_MEMORY_UI_HIDDEN) BitmapPool.getInstance().clear();
+    }
+
+    @Override
+    public void onLowMemory() {
+        IconPrefetcher.backOff();
+        evictAll();
+        BitmapPool.getInstance().clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    public synchronized String getStats() {
+        return "size=" + size() / 1024 + "KB/" + maxSize() / 1024 + "KB, hits=" + hitCount()
+                + ", misses=" + missCount() + ", evictions=" + evictionCount();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Предзагрузка иконок: при прокрутке греет кэш для следующих строк по направлению движения
+// (чем быстрее прокрутка, тем дальше), в простое главного потока — первый экран соседних вкладок.
+// При нехватке памяти предзагрузка приостанавливается.
+public class IconPrefetcher extends RecyclerView.OnScrollListener {
+    // Источник пакетов по позициям списка (реализует адаптер)
+    public interface PackageSource {
+        int getItemCount();
+        String getPackageAt(int position);
+    }
+
+    private static final int MIN_LOOKAHEAD = 8;
+    private static final int MAX_LOOKAHEAD = 48;
+    // Сколько пикселей прокрутки за событие добавляют одну строку к запасу
+    private static final int PX_PER_EXTRA_ITEM = 20;
+    private static final int QUEUE_LIMIT = 64;
+    private static final int TRACKED_LIMIT = 256;
+    private static final long BACKOFF_MS = 30_000;
+    // Первый экран вкладки: 2 колонки по ~6 строк
+    private static final int FIRST_SCREEN_ITEMS = 12;
+
+    // Один низкоприоритетный поток: предзагрузка не должна отнимать потоки у видимых строк
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingDeque<>(QUEUE_LIMIT), r -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "icon-prefetch"), new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    // Предзагруженные, но ещё не показанные пакеты
+    private static final Map<String, Boolean> prefetched = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > TRACKED_LIMIT;
+                }
+            });
+    private static final AtomicInteger prefetchCount = new AtomicInteger();
+    private static final AtomicInteger hitCount = new AtomicInteger();
+    private static volatile long pausedUntil;
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final Context context;
+    private int lastPrefetchEdge = RecyclerView.NO_POSITION;
+
+    public IconPrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || isPaused()) return;
+        if (!(recyclerView.getAdapter() instanceof PackageSource)) return;
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+        PackageSource source = (PackageSource) recyclerView.getAdapter();
+        LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int lookahead = Math.min(MAX_LOOKAHEAD, MIN_LOOKAHEAD + Math.abs(dy) / PX_PER_EXTRA_ITEM);
+        int count = source.getItemCount();
+        if (dy > 0) {
+            int last = lm.findLastVisibleItemPosition();
+            if (last == RecyclerView.NO_POSITION || last == lastPrefetchEdge) return;
+            lastPrefetchEdge = last;
+            for (int i = last + 1; i <= Math.min(count - 1, last + lookahead); i++) prefetch(source.getPackageAt(i));
+        } else {
+            int first = lm.findFirstVisibleItemPosition();
+            if (first == RecyclerView.NO_POSITION || first == lastPrefetchEdge) return;
+            lastPrefetchEdge = first;
+            for (int i = first - 1; i >= Math.max(0, first - lookahead); i--) prefetch(source.getPackageAt(i));
+        }
+    }
+
+    // Первый экран вкладки, которую пользователь, вероятно, откроет следующей
+    public void warmFirstScreen(List<String> packageNames) {
+        if (isPaused()) return;
+        for (int i = 0; i < packageNames.size() && i < FIRST_SCREEN_ITEMS; i++) prefetch(packageNames.get(i));
+    }
+
+    private void prefetch(String packageName) {
+        if (packageName == null || AppManager.getCachedIcon(packageName) != null) return;
+        if (prefetched.containsKey(packageName)) return;
+        executor.execute(() -> {
+            if (isPaused() || AppManager.getCachedIcon(packageName) != null) return;
+            if (AppManager.loadIconBitmap(context, packageName) == null) return;
+            prefetched.put(packageName, Boolean.TRUE);
+            prefetchCount.incrementAndGet();
+        });
+    }
+
+    // Вызывается адаптером при показе иконки: попадание, если она была предзагружена и ещё лежит в кэше
+    public static void onIconShown(String packageName, boolean fromCache) {
+        if (prefetched.remove(packageName) != null && fromCache) hitCount.incrementAndGet();
+    }
+
+    // Нехватка памяти: очередь сбрасывается, новая предзагрузка не запускается BACKOFF_MS
+    public static void backOff() {
+        pausedUntil = SystemClock.uptimeMillis() + BACKOFF_MS;
+        executor.getQueue().clear();
+        prefetched.clear();
+    }
+
+    private static boolean isPaused() {
+        return SystemClock.uptimeMillis() < pausedUntil;
+    }
+
+    public static String getStats() {
+        int total = prefetchCount.get();
+        int hits = hitCount.get();
+        int ratio = total > 0 ? hits * 100 / total : 0;
+        return "prefetched=" + total + ", hits=" + hits + " (" + ratio + "%)" + (isPaused() ? ", paused" : "");
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+
+import java.io.ByteArrayOutputStream;
+
+// Растеризация иконок сразу в размер показа (самый крупный — 48dp в item_app) для плотности экрана
+// и хранение в WEBP без потерь вместо PNG 100. Битмапы берутся из BitmapPool, Canvas у каждого потока свой.
+public class IconRasterizer {
+    private static final int ICON_SIZE_DP = 48;
+    // Для WEBP_LOSSLESS качество задаёт усилие сжатия: низкое значение кодирует в разы быстрее
+    private static final int WEBP_EFFORT = 25;
+    private static final ThreadLocal<Canvas> scratchCanvas = ThreadLocal.withInitial(Canvas::new);
+
+    public static int getTargetSize(Context context) {
+        return Math.round(ICON_SIZE_DP * context.getResources().getDisplayMetrics().density);
+    }
+
+    public static int getDensityDpi(Context context) {
+        return context.getResources().getDisplayMetrics().densityDpi;
+    }
+
+    // Рисует drawable в квадрат size x size с сохранением пропорций
+    public static Bitmap rasterize(Drawable drawable, int size) {
+        Bitmap bitmap = BitmapPool.getInstance().get(size, size);
+        if (bitmap == null) bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = scratchCanvas.get();
+        canvas.setBitmap(bitmap);
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            drawable.setBounds(0, 0, size, size);
+        } else {
+            float scale = Math.min((float) size / width, (float) size / height);
+            int w = Math.round(width * scale);
+            int h = Math.round(height * scale);
+            int left = (size - w) / 2;
+            int top = (size - h) / 2;
+            drawable.setBounds(left, top, left + w, top + h);
+        }
+        drawable.draw(canvas);
+        canvas.setBitmap(null);
+        return bitmap;
+    }
+
+    public static byte[] encode(Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        return bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSLESS, WEBP_EFFORT, out) ? out.toByteArray() : null;
+    }
+
+    // Иконки, сохранённые крупнее нужного, уменьшаются при декодировании через inSampleSize
+    public static Bitmap decode(byte[] data, int targetSize, int densityDpi) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= targetSize && options.outHeight / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inDensity = densityDpi;
+        options.inTargetDensity = densityDpi;
+        options.inMutable = true;
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        options.inBitmap = BitmapPool.getInstance().get(width, height);
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // Битмап из пула не подошёл декодеру — декодируем в новый
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+}
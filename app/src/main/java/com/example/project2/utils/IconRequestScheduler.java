@@ -0,0 +1,74 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Очередь загрузки иконок для строк списка: последний запрос выполняется первым (LIFO),
+// поэтому после быстрой прокрутки сначала грузятся видимые строки. Запросы переработанных строк отменяются и убираются из очереди.
+public class IconRequestScheduler {
+    private static final int THREADS = 2;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, new LifoQueue());
+
+    public IconRequestScheduler() {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Request request(Context context, String packageName, AppManager.IconCallback callback) {
+        Request request = new Request(context.getApplicationContext(), packageName, callback);
+        executor.execute(request);
+        return request;
+    }
+
+    public class Request implements Runnable {
+        private final Context context;
+        private final String packageName;
+        private final AppManager.IconCallback callback;
+        private volatile boolean cancelled;
+
+        Request(Context context, String packageName, AppManager.IconCallback callback) {
+            this.context = context;
+            this.packageName = packageName;
+            this.callback = callback;
+        }
+
+        public String getPackageName() { return packageName; }
+
+        public void cancel() {
+            cancelled = true;
+            executor.remove(this);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            Bitmap bitmap = AppManager.acquireIcon(context, packageName);
+            if (bitmap == null) return;
+            if (cancelled) { AppManager.releaseIcon(bitmap); return; }
+            mainHandler.post(() -> {
+                if (cancelled) AppManager.releaseIcon(bitmap);
+                else callback.onIconLoaded(bitmap);
+            });
+        }
+    }
+
+    // Очередь, в которой новые задачи встают в начало
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+        @Override
+        public boolean offer(Runnable runnable) { return offerFirst(runnable); }
+
+        @Override
+        public boolean add(Runnable runnable) { return offer(runnable); }
+
+        @Override
+        public void put(Runnable runnable) throws InterruptedException { putFirst(runnable); }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.project2.utils;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Хранилище закодированных иконок в одном файле-атласе вместо файла на каждый пакет.
+// icons.<gen>.atlas — подряд записанные изображения, icons.<gen>.idx — журнал записей индекса
+// (пакет -> смещение и длина), который дописывается при каждом изменении.
+// Атлас читается через отображённый в память FileChannel. Когда удалённых данных становится много,
+// живые записи переписываются в атлас следующего поколения; поколение считается готовым,
+// когда появился его файл индекса.
+public class IconStore {
+    private static final String DIR_NAME = "icon_store";
+    private static final String LEGACY_DIR_NAME = "app_icons";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final long MIN_COMPACT_BYTES = 256 * 1024;
+
+    private static IconStore instance;
+
+    private final File dir;
+    private final Map<String, Entry> index = new HashMap<>();
+    private int generation;
+    private RandomAccessFile atlasFile;
+    private DataOutputStream indexOut;
+    private MappedByteBuffer mapped;
+    private long liveBytes;
+    private long deadBytes;
+
+    private static class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public interface Visitor { void visit(String packageName, byte[] data); }
+
+    public static synchronized IconStore getInstance(Context context) {
+        if (instance == null) instance = new IconStore(context.getApplicationContext());
+        return instance;
+    }
+
+    private IconStore(Context context) {
+        dir = new File(context.getFilesDir(), DIR_NAME);
+        if (!dir.exists()) dir.mkdirs();
+        deleteRecursively(new File(context.getFilesDir(), LEGACY_DIR_NAME)); // старые PNG перезагрузятся по требованию
+        generation = findLatestGeneration();
+        try {
+            readIndex();
+            openFiles();
+        } catch (IOException e) {
+            e.printStackTrace();
+            resetFiles();
+        }
+        deleteOtherGenerations();
+    }
+
+    public synchronized boolean contains(String packageName) {
+        return index.containsKey(packageName);
+    }
+
+    public synchronized byte[] get(String packageName) {
+        Entry entry = index.get(packageName);
+        if (entry == null) return null;
+        try {
+            return read(entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Данные дописываются в конец атласа, затем в журнал индекса; старая версия становится мусором до уплотнения
+    public synchronized void put(String packageName, byte[] data) {
+        try {
+            long offset = atlasFile.length();
+            atlasFile.seek(offset);
+            atlasFile.write(data);
+            indexOut.writeByte(OP_PUT);
+            indexOut.writeUTF(packageName);
+            indexOut.writeLong(offset);
+            indexOut.writeInt(data.length);
+            indexOut.flush();
+            Entry old = index.put(packageName, new Entry(offset, data.length));
+            liveBytes += data.length;
+            if (old != null) {
+                liveBytes -= old.length;
+                deadBytes += old.length;
+            }
+            compactIfNeeded();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void remove(String packageName) {
+        Entry old = index.remove(packageName);
+        if (old == null) return;
+        liveBytes -= old.length;
+        deadBytes += old.length;
+        try {
+            indexOut.writeByte(OP_REMOVE);
+            indexOut.writeUTF(packageName);
+            indexOut.flush();
+            compactIfNeeded();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Обход всех иконок в порядке смещений — одно последовательное чтение отображённого атласа.
+    // Под блокировкой копируются только записи индекса и вид на отображение; visitor (декодирование)
+    // работает без неё, и get/put не ждут конца обхода. Атлас не усекается: уплотнение и очистка
+    // создают новые файлы, поэтому отображение остаётся читаемым до конца обхода
+    public void forEach(Visitor visitor) {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>();
+        ByteBuffer atlas;
+        synchronized (this) {
+            long end = 0;
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+                end = Math.max(end, e.getValue().offset + e.getValue().length);
+            }
+            if (entries.isEmpty()) return;
+            try {
+                atlas = mapAtlas(end).duplicate();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.getValue().offset, b.getValue().offset));
+        for (Map.Entry<String, Entry> e : entries) {
+            byte[] data = new byte[e.getValue().length];
+            atlas.position((int) e.getValue().offset);
+            atlas.get(data);
+            visitor.visit(e.getKey(), data);
+        }
+    }
+
+    public synchronized void clear() {
+        closeFiles();
+        deleteGeneration(generation);
+        index.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+        resetFiles();
+    }
+
+    private byte[] read(Entry entry) throws IOException {
+        byte[] data = new byte[entry.length];
+        ByteBuffer view = mapAtlas(entry.offset + entry.length).duplicate();
+        view.position((int) entry.offset);
+        view.get(data);
+        return data;
+    }
+
+    // Отображение атласа, покрывающее байты до end; переотображается, когда атлас дописан дальше
+    private MappedByteBuffer mapAtlas(long end) throws IOException {
+        if (mapped == null || mapped.capacity() < end) {
+            mapped = atlasFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, atlasFile.length());
+        }
+        return mapped;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (deadBytes < MIN_COMPACT_BYTES || deadBytes < liveBytes) return;
+        int next = generation + 1;
+        File atlas = atlasFile(next);
+        File idx = indexFile(next);
+        File idxTmp = new File(dir, idx.getName() + ".tmp");
+        Map<String, Entry> compacted = new HashMap<>();
+        try (FileOutputStream atlasStream = new FileOutputStream(atlas);
+             FileOutputStream idxStream = new FileOutputStream(idxTmp)) {
+            DataOutputStream atlasOut = new DataOutputStream(new BufferedOutputStream(atlasStream));
+            DataOutputStream idxOut = new DataOutputStream(new BufferedOutputStream(idxStream));
+            long offset = 0;
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                byte[] data = read(e.getValue());
+                atlasOut.write(data);
+                idxOut.writeByte(OP_PUT);
+                idxOut.writeUTF(e.getKey());
+                idxOut.writeLong(offset);
+                idxOut.writeInt(data.length);
+                compacted.put(e.getKey(), new Entry(offset, data.length));
+                offset += data.length;
+            }
+            // Индекс нового поколения появляется только после того, как атлас и индекс на диске
+            atlasOut.flush();
+            atlasStream.getChannel().force(true);
+            idxOut.flush();
+            idxStream.getChannel().force(true);
+        }
+        if (!idxTmp.renameTo(idx)) throw new IOException("rename failed: " + idxTmp);
+        closeFiles();
+        deleteGeneration(generation);
+        generation = next;
+        index.clear();
+        index.putAll(compacted);
+        deadBytes = 0;
+        openFiles();
+    }
+
+    // Недописанный хвост журнала (обрыв записи при аварийном завершении) отрезается,
+    // чтобы новые записи не дописывались после мусора
+    private void readIndex() throws IOException {
+        File idx = indexFile(generation);
+        if (!idx.exists()) return;
+        long atlasLength = atlasFile(generation).length();
+        long fileLength = idx.length();
+        long validLength = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(idx)));
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                try {
+                    byte op = in.readByte();
+                    if (op != OP_PUT && op != OP_REMOVE) break;
+                    String pkg = in.readUTF().intern(); // общий экземпляр с каталогом приложений
+                    Entry old;
+                    if (op == OP_PUT) {
+                        long offset = in.readLong();
+                        int length = in.readInt();
+                        if (offset < 0 || length < 0 || offset + length > atlasLength) break;
+                        old = index.put(pkg, new Entry(offset, length));
+                        liveBytes += length;
+                    } else {
+                        old = index.remove(pkg);
+                    }
+                    if (old != null) {
+                        liveBytes -= old.length;
+                        deadBytes += old.length;
+                    }
+                    validLength = counter.count;
+                } catch (EOFException e) { break; }
+            }
+        }
+        if (validLength < fileLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(idx, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    // Число прочитанных байт — граница последней целой записи журнала
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    private void openFiles() throws IOException {
+        atlasFile = new RandomAccessFile(atlasFile(generation), "rw");
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(generation), true)));
+        mapped = null;
+    }
+
+    private void closeFiles() {
+        try {
+            if (indexOut != null) indexOut.close();
+            if (atlasFile != null) atlasFile.close();
+        } catch (IOException e) { e.printStackTrace(); }
+        indexOut = null;
+        atlasFile = null;
+        mapped = null;
+    }
+
+    private void resetFiles() {
+        index.clear();
+        try {
+            atlasFile(generation).delete();
+            indexFile(generation).delete();
+            openFiles();
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    private int findLatestGeneration() {
+        int latest = 0;
+        String[] names = dir.list();
+        if (names == null) return latest;
+        for (String name : names) {
+            if (!name.startsWith("icons.") || !name.endsWith(".idx")) continue;
+            try {
+                latest = Math.max(latest, Integer.parseInt(name.substring(6, name.length() - 4)));
+            } catch (NumberFormatException ignored) { }
+        }
+        return latest;
+    }
+
+    private void deleteOtherGenerations() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        String atlas = atlasFile(generation).getName();
+        String idx = indexFile(generation).getName();
+        for (File f : files) {
+            if (!f.getName().equals(atlas) && !f.getName().equals(idx)) f.delete();
+        }
+    }
+
+    private void deleteGeneration(int gen) {
+        atlasFile(gen).delete();
+        indexFile(gen).delete();
+    }
+
+    private File atlasFile(int gen) {
+        return new File(dir, "icons." + gen + ".atlas");
+    }
+
+    private File indexFile(int gen) {
+        return new File(dir, "icons." + gen + ".idx");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteRecursively(child);
+        if (file.exists()) file.delete();
+    }
+}
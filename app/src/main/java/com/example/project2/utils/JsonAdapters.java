@@ -0,0 +1,195 @@
+package com.example.project2.utils;
+
+import com.example.project2.models.AppInfo;
+import com.example.project2.models.Category;
+import com.example.project2.models.CategorySet;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Потоковая (без рефлексии) JSON-сериализация моделей. Имена полей совпадают с прежним форматом Gson,
+// поэтому старые данные читаются без миграции. Иконки не пишутся;
+// незнакомые поля при чтении пропускаются.
+public final class JsonAdapters {
+
+    private JsonAdapters() {}
+
+    public static void writeApps(Writer out, List<AppInfo> apps) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        for (AppInfo app : apps) writeApp(writer, app);
+        writer.endArray();
+        writer.flush();
+    }
+
+    public static List<AppInfo> readApps(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        List<AppInfo> apps = new ArrayList<>();
+        if (reader.peek() == JsonToken.NULL) { reader.nextNull(); return apps; }
+        reader.beginArray();
+        while (reader.hasNext()) apps.add(readApp(reader));
+        reader.endArray();
+        return apps;
+    }
+
+    public static void writeCategories(Writer out, List<Category> categories) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        for (Category category : categories) writeCategory(writer, category);
+        writer.endArray();
+        writer.flush();
+    }
+
+    public static List<Category> readCategories(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        List<Category> categories = new ArrayList<>();
+        if (reader.peek() == JsonToken.NULL) { reader.nextNull(); return categories; }
+        reader.beginArray();
+        while (reader.hasNext()) categories.add(readCategory(reader));
+        reader.endArray();
+        return categories;
+    }
+
+    public static void writeAppCategoryMap(Writer out, Map<String, CategorySet> map) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        for (Map.Entry<String, CategorySet> entry : map.entrySet()) {
+            writer.name(entry.getKey());
+            writeIds(writer, entry.getValue());
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
+    public static Map<String, CategorySet> readAppCategoryMap(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        Map<String, CategorySet> map = new HashMap<>();
+        if (reader.peek() == JsonToken.NULL) { reader.nextNull(); return map; }
+        reader.beginObject();
+        while (reader.hasNext()) map.put(reader.nextName().intern(), readIds(reader)); // тот же экземпляр, что в каталоге
+        reader.endObject();
+        return map;
+    }
+
+    // Обёртки для значений, хранящихся строками в SharedPreferences
+    public static String appsToJson(List<AppInfo> apps) {
+        StringWriter out = new StringWriter();
+        try { writeApps(out, apps); } catch (IOException e) { throw new IllegalStateException(e); }
+        return out.toString();
+    }
+
+    public static List<AppInfo> appsFromJson(String json) throws IOException {
+        return readApps(new StringReader(json));
+    }
+
+    public static String categoriesToJson(List<Category> categories) {
+        StringWriter out = new StringWriter();
+        try { writeCategories(out, categories); } catch (IOException e) { throw new IllegalStateException(e); }
+        return out.toString();
+    }
+
+    public static List<Category> categoriesFromJson(String json) throws IOException {
+        return readCategories(new StringReader(json));
+    }
+
+    public static String appCategoryMapToJson(Map<String, CategorySet> map) {
+        StringWriter out = new StringWriter();
+        try { writeAppCategoryMap(out, map); } catch (IOException e) { throw new IllegalStateException(e); }
+        return out.toString();
+    }
+
+    public static Map<String, CategorySet> appCategoryMapFromJson(String json) throws IOException {
+        return readAppCategoryMap(new StringReader(json));
+    }
+
+    private static void writeApp(JsonWriter writer, AppInfo app) throws IOException {
+        writer.beginObject();
+        writer.name("packageName").value(app.getPackageName());
+        writer.name("appName").value(app.getAppName());
+        writer.name("autoCategory").value(app.getAutoCategory());
+        writer.name("userCategoryIds");
+        writeIds(writer, app.getUserCategories());
+        writer.endObject();
+    }
+
+    private static AppInfo readApp(JsonReader reader) throws IOException {
+        String packageName = null, appName = null, autoCategory = null;
+        CategorySet userCategories = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "packageName": packageName = nextStringOrNull(reader); break;
+                case "appName": appName = nextStringOrNull(reader); break;
+                case "autoCategory": autoCategory = nextStringOrNull(reader); break;
+                case "userCategoryIds": userCategories = readIds(reader); break;
+                default: reader.skipValue(); // в т.ч. cachedIcon из старых версий
+            }
+        }
+        reader.endObject();
+        AppInfo app = new AppInfo(packageName, appName, null);
+        if (autoCategory != null) app.setAutoCategory(autoCategory);
+        if (userCategories != null) app.setUserCategories(userCategories);
+        return app;
+    }
+
+    private static void writeCategory(JsonWriter writer, Category category) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(category.getId());
+        writer.name("name").value(category.getName());
+        writer.name("color").value(category.getColor());
+        writer.name("builtIn").value(category.isBuiltIn());
+        writer.endObject();
+    }
+
+    private static Category readCategory(JsonReader reader) throws IOException {
+        int id = 0, color = 0;
+        String name = null;
+        boolean builtIn = false, hasColor = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id": id = reader.nextInt(); break;
+                case "name": name = nextStringOrNull(reader); break;
+                case "color": color = reader.nextInt(); hasColor = true; break;
+                case "builtIn": builtIn = reader.nextBoolean(); break;
+                default: reader.skipValue(); // в т.ч. packageNames из старых версий: состав берётся из карты приложений
+            }
+        }
+        reader.endObject();
+        Category category = new Category(id, name);
+        if (hasColor) category.setColor(color);
+        category.setBuiltIn(builtIn);
+        return category;
+    }
+
+    // Идентификаторы пишутся и читаются как примитивы int прямо в CategorySet — без Integer и промежуточных списков
+    private static void writeIds(JsonWriter writer, CategorySet ids) throws IOException {
+        writer.beginArray();
+        if (ids != null) for (int id : ids.toArray()) writer.value(id);
+        writer.endArray();
+    }
+
+    private static CategorySet readIds(JsonReader reader) throws IOException {
+        CategorySet ids = new CategorySet();
+        if (reader.peek() == JsonToken.NULL) { reader.nextNull(); return ids; }
+        reader.beginArray();
+        while (reader.hasNext()) ids.add(reader.nextInt());
+        reader.endArray();
+        return ids;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) { reader.nextNull(); return null; }
+        return reader.nextString();
+    }
+}
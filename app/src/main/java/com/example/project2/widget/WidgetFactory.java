@@ -17,7 +17,9 @@ import com.example.project2.models.AppInfo;
 import com.example.project2.utils.AppManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
     private static final String PREFS_NAME = "widget_prefs";
@@ -26,6 +28,9 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
     private List<AppInfo> apps = new ArrayList<>();
     private int appWidgetId;
     private String categoryTag = "All";
+    // Иконки этого виджета по пакетам. Удерживаются, чтобы пул битмапов не переиспользовал их;
+    // общие AppInfo не трогаются — их видят все виджеты и вкладки
+    private final Map<String, Bitmap> icons = new HashMap<>();
 
     public WidgetFactory(Context context, Intent intent) {
         this.context = context;
@@ -53,11 +58,10 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
         List<AppInfo> allApps = AppManager.getAppsSync(context, categoryTag);
         Log.d("WidgetFactory", "loaded " + allApps.size() + " apps");
 
+        releaseIcons();
         for (AppInfo app : allApps) {
-            Bitmap cachedIcon = AppManager.getCachedIcon(app.getPackageName());
-            if (cachedIcon != null) {
-                app.setCachedIcon(cachedIcon);
-            }
+            Bitmap cachedIcon = AppManager.acquireCachedIcon(app.getPackageName());
+            if (cachedIcon != null) putIcon(app.getPackageName(), cachedIcon);
         }
 
         apps.clear();
@@ -83,7 +87,7 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
 
         views.setTextViewText(R.id.widget_app_name, app.getAppName());
 
-        Bitmap cachedIcon = app.getCachedIcon();
+        Bitmap cachedIcon = getIcon(app.getPackageName());
         if (cachedIcon != null) {
             views.setImageViewBitmap(R.id.widget_app_icon, cachedIcon);
         } else {
@@ -102,10 +106,10 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
     }
 
     private void loadIconAsync(AppInfo app, RemoteViews views, int position) {
-        new Thread(() -> {
-            Bitmap bitmap = AppManager.loadIconBitmap(context, app.getPackageName());
+        AppManager.executor.execute(() -> {
+            Bitmap bitmap = AppManager.acquireIcon(context, app.getPackageName());
             if (bitmap != null) {
-                app.setCachedIcon(bitmap);
+                putIcon(app.getPackageName(), bitmap);
                 new Handler(Looper.getMainLooper()).post(() -> {
                     RemoteViews updatedViews = new RemoteViews(context.getPackageName(), R.layout.item_widget_app);
                     updatedViews.setImageViewBitmap(R.id.widget_app_icon, bitmap);
@@ -119,7 +123,7 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
                             .partiallyUpdateAppWidget(appWidgetId, updatedViews);
                 });
             }
-        }).start();
+        });
     }
 
     @Override
@@ -148,5 +152,27 @@ public class WidgetFactory implements RemoteViewsService.RemoteViewsFactory {
     @Override
     public void onDestroy() {
         Log.d("WidgetFactory", "onDestroy for widget " + appWidgetId);
+        releaseIcons();
+    }
+
+    private Bitmap getIcon(String packageName) {
+        synchronized (icons) {
+            return icons.get(packageName);
+        }
+    }
+
+    // bitmap уже удержан (acquire); фабрика отпускает его при перезагрузке или уничтожении
+    private void putIcon(String packageName, Bitmap bitmap) {
+        synchronized (icons) {
+            Bitmap previous = icons.put(packageName, bitmap);
+            if (previous != null) AppManager.releaseIcon(previous);
+        }
+    }
+
+    private void releaseIcons() {
+        synchronized (icons) {
+            for (Bitmap bitmap : icons.values()) AppManager.releaseIcon(bitmap);
+            icons.clear();
+        }
     }
 }
\ No newline at end of file
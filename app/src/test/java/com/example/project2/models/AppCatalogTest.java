@@ -0,0 +1,181 @@
+package com.example.project2.models;
+
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that catalogue views behave like standalone apps. With -Dbenchmarks=true also compares
+ * retained heap and full-GC time with the former one-object-per-app representation.
+ */
+public class AppCatalogTest {
+
+    private static final String[] AUTO_CATEGORIES = {"Games", "Social", "Work", "Other"};
+
+    @Test
+    public void catalog_keepsFieldsAndMembership() {
+        List<AppInfo> apps = syntheticApps(200);
+        List<AppInfo> views = catalogApps(200);
+        assertEquals(apps.size(), views.size());
+        for (int i = 0; i < apps.size(); i++) {
+            assertEquals(apps.get(i).getPackageName(), views.get(i).getPackageName());
+            assertEquals(apps.get(i).getAppName(), views.get(i).getAppName());
+            assertEquals(apps.get(i).getAutoCategory(), views.get(i).getAutoCategory());
+            assertEquals(apps.get(i).getUserCategoryIds(), views.get(i).getUserCategoryIds());
+            assertTrue(apps.get(i).hasSameLabel(views.get(i)));
+        }
+        // Автокатегории — общие строки из таблицы, а не копия на каждое приложение
+        assertSame(views.get(0).getAutoCategory(), views.get(4).getAutoCategory());
+        // Имена пакетов — общие экземпляры с ключами карт, прочитанными из JSON
+        assertSame(views.get(7).getPackageName(), new String(views.get(7).getPackageName()).intern());
+    }
+
+    @Test
+    public void labels_growHeapAndCompareWithoutStrings() {
+        AppCatalog catalog = new AppCatalog(4);
+        AppInfo longLabel = catalog.set(0, "com.example.a", "Очень длинное название приложения, больше начального буфера", null);
+        AppInfo empty = catalog.set(1, "com.example.b", "", null);
+        AppInfo missing = catalog.set(2, "com.example.c", null, null);
+        AppInfo same = catalog.set(3, "com.example.d", "Очень длинное название приложения, больше начального буфера", null);
+        assertEquals("Очень длинное название приложения, больше начального буфера", longLabel.getAppName());
+        assertEquals("", empty.getAppName());
+        assertNull(missing.getAppName());
+        // Декодированное название запоминается и не создаётся заново при каждой привязке
+        assertSame(longLabel.getAppName(), longLabel.getAppName());
+        assertTrue(longLabel.hasSameLabel(same));
+        assertTrue(longLabel.hasSameLabel(new AppInfo("com.example.x", longLabel.getAppName(), null)));
+        assertFalse(longLabel.hasSameLabel(empty));
+        assertFalse(empty.hasSameLabel(missing));
+        assertTrue(missing.hasSameLabel(new AppInfo("com.example.y", null, null)));
+    }
+
+    @Test
+    public void views_updateMembershipInPlace() {
+        AppCatalog catalog = new AppCatalog(2);
+        AppInfo a = catalog.set(0, "com.example.a", "A", null);
+        AppInfo b = catalog.set(1, "com.example.b", "B", null);
+        assertFalse(a.isInUserCategory(5));
+        assertTrue(a.getUserCategoryIds().isEmpty());
+        a.addToUserCategory(5);
+        a.addToUserCategory(7);
+        assertTrue(a.isInUserCategory(5));
+        assertTrue(a.isInAllUserCategories(CategorySet.of(5, 7)));
+        assertFalse(b.isInAnyUserCategory(CategorySet.of(5, 7)));
+        a.removeFromUserCategory(5);
+        a.removeFromUserCategory(7);
+        assertTrue(a.getUserCategoryIds().isEmpty());
+        assertTrue(a.isInAllUserCategories(new CategorySet()));
+    }
+
+    @Test
+    public void benchmark_heapAndGcAgainstLegacy() {
+        assumeTrue("run with -Dbenchmarks=true", Boolean.getBoolean("benchmarks"));
+        int count = 2000;
+        for (int i = 0; i < 3; i++) {
+            retainedBytes(() -> legacyApps(count));
+            retainedBytes(() -> catalogApps(count));
+        }
+        long legacyBytes = retainedBytes(() -> legacyApps(count));
+        long catalogBytes = retainedBytes(() -> catalogApps(count));
+        long legacyGc = gcMillis(() -> legacyApps(count));
+        long catalogGc = gcMillis(() -> catalogApps(count));
+        System.out.println(count + " apps, per-object: " + legacyBytes / 1024 + " KB, " + legacyGc + " ms GC; catalogue: "
+                + catalogBytes / 1024 + " KB, " + catalogGc + " ms GC");
+    }
+
+    // Поля AppInfo до перехода на каталог: свои строки, список id и ссылки на иконки в каждом объекте
+    private static class LegacyAppInfo {
+        String packageName;
+        String appName;
+        Object icon;
+        Object cachedIcon;
+        String autoCategory;
+        List<Integer> userCategoryIds = new ArrayList<>();
+    }
+
+    private interface Dataset {
+        Object build();
+    }
+
+    private static List<LegacyAppInfo> legacyApps(int count) {
+        List<LegacyAppInfo> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LegacyAppInfo app = new LegacyAppInfo();
+            app.packageName = new String("com.example.vendor" + i % 97 + ".app" + i);
+            app.appName = new String("Application " + i);
+            app.autoCategory = new String(AUTO_CATEGORIES[i % AUTO_CATEGORIES.length]);
+            if (i % 3 == 0) app.userCategoryIds.add(3 + i % 5);
+            if (i % 7 == 0) app.userCategoryIds.add(10);
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    // Прирост кучи после сборки мусора, пока живы десять таких списков, в пересчёте на один список
+    private static long retainedBytes(Dataset dataset) {
+        Runtime runtime = Runtime.getRuntime();
+        List<Object> retained = new ArrayList<>();
+        settle();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10; i++) retained.add(dataset.build());
+        settle();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        assertEquals(10, retained.size());
+        return (after - before) / retained.size();
+    }
+
+    // Время полных сборок, пока десять таких списков живы: сборщику нужно обойти все их объекты
+    private static long gcMillis(Dataset dataset) {
+        List<Object> retained = new ArrayList<>();
+        for (int i = 0; i < 10; i++) retained.add(dataset.build());
+        settle();
+        long before = totalGcMillis();
+        for (int i = 0; i < 10; i++) System.gc();
+        long elapsed = totalGcMillis() - before;
+        assertEquals(10, retained.size());
+        return elapsed;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, bean.getCollectionTime());
+        return total;
+    }
+
+    private static void settle() {
+        for (int i = 0; i < 3; i++) System.gc();
+    }
+
+    // Те же данные, записанные в один каталог, как при сканировании
+    private static List<AppInfo> catalogApps(int count) {
+        AppCatalog catalog = new AppCatalog(count);
+        List<AppInfo> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AppInfo app = catalog.set(i, new String("com.example.vendor" + i % 97 + ".app" + i), new String("Application " + i),
+                    new String(AUTO_CATEGORIES[i % AUTO_CATEGORIES.length]));
+            if (i % 3 == 0) app.addToUserCategory(3 + i % 5);
+            if (i % 7 == 0) app.addToUserCategory(10);
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    // Отдельные приложения, каждое со своим каталогом на одну строку
+    private static List<AppInfo> syntheticApps(int count) {
+        List<AppInfo> apps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AppInfo app = new AppInfo(new String("com.example.vendor" + i % 97 + ".app" + i), new String("Application " + i), null);
+            app.setAutoCategory(new String(AUTO_CATEGORIES[i % AUTO_CATEGORIES.length]));
+            if (i % 3 == 0) app.addToUserCategory(3 + i % 5);
+            if (i % 7 == 0) app.addToUserCategory(10);
+            apps.add(app);
+        }
+        return apps;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.project2.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the user-category mask fast paths and DIFFERENCE agree with part-by-part matching.
+ */
+public class AppQueryTest {
+
+    private static final int WORK = 50_000;
+    private static final int SOCIAL = 50_001;
+    private static final int GAMES = 50_002;
+
+    // Все сочетания трёх категорий, плюс автокатегории
+    private static List<AppInfo> apps() {
+        AppCatalog catalog = new AppCatalog(8);
+        List<AppInfo> apps = new ArrayList<>();
+        for (int mask = 0; mask < 8; mask++) {
+            AppInfo app = catalog.set(mask, "com.example.app" + mask, "App " + mask, mask % 2 == 0 ? "Games" : "Other");
+            if ((mask & 1) != 0) app.addToUserCategory(WORK);
+            if ((mask & 2) != 0) app.addToUserCategory(SOCIAL);
+            if ((mask & 4) != 0) app.addToUserCategory(GAMES);
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    // Вложенный запрос не состоит только из пользовательских категорий, поэтому маска не строится
+    private static AppQuery slow(AppQuery query) {
+        return AppQuery.intersection(query, AppQuery.all());
+    }
+
+    @Test
+    public void unionMask_matchesPartByPart() {
+        AppQuery fast = AppQuery.union(AppQuery.userCategory(WORK), AppQuery.userCategory(SOCIAL));
+        AppQuery reference = AppQuery.union(slow(AppQuery.userCategory(WORK)), slow(AppQuery.userCategory(SOCIAL)));
+        for (AppInfo app : apps()) {
+            assertEquals(app.getPackageName(), reference.matches(app), fast.matches(app));
+            assertEquals(app.isInUserCategory(WORK) || app.isInUserCategory(SOCIAL), fast.matches(app));
+        }
+    }
+
+    @Test
+    public void intersectionMask_matchesPartByPart() {
+        AppQuery fast = AppQuery.intersection(AppQuery.userCategory(WORK), AppQuery.userCategory(GAMES));
+        AppQuery reference = AppQuery.intersection(slow(AppQuery.userCategory(WORK)), slow(AppQuery.userCategory(GAMES)));
+        for (AppInfo app : apps()) {
+            assertEquals(app.getPackageName(), reference.matches(app), fast.matches(app));
+            assertEquals(app.isInUserCategory(WORK) && app.isInUserCategory(GAMES), fast.matches(app));
+        }
+    }
+
+    @Test
+    public void emptyMasks_matchLikeEmptyLoops() {
+        for (AppInfo app : apps()) {
+            assertFalse(AppQuery.union().matches(app));
+            assertTrue(AppQuery.intersection().matches(app));
+        }
+    }
+
+    @Test
+    public void difference_excludesSecondQuery() {
+        AppQuery query = AppQuery.difference(AppQuery.userCategory(WORK), AppQuery.userCategory(SOCIAL));
+        AppQuery mixed = AppQuery.difference(AppQuery.autoCategory("Games"),
+                AppQuery.union(AppQuery.userCategory(SOCIAL), AppQuery.userCategory(GAMES)));
+        for (AppInfo app : apps()) {
+            assertEquals(app.isInUserCategory(WORK) && !app.isInUserCategory(SOCIAL), query.matches(app));
+            assertEquals("Games".equals(app.getAutoCategory())
+                    && !app.isInUserCategory(SOCIAL) && !app.isInUserCategory(GAMES), mixed.matches(app));
+        }
+        assertEquals(query, AppQuery.difference(AppQuery.userCategory(WORK), AppQuery.userCategory(SOCIAL)));
+        assertNotEquals(query, AppQuery.difference(AppQuery.userCategory(SOCIAL), AppQuery.userCategory(WORK)));
+    }
+}
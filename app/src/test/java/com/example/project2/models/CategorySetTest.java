@@ -0,0 +1,98 @@
+package com.example.project2.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bitset operations on sets that span several 64-bit words and sets of different lengths.
+ */
+public class CategorySetTest {
+
+    // Слоты выдаются глобально и подряд: 130 новых id гарантированно займут не меньше трёх слов
+    private static int[] freshIds(int base) {
+        int[] ids = new int[130];
+        for (int i = 0; i < ids.length; i++) ids[i] = base + i;
+        return ids;
+    }
+
+    @Test
+    public void addRemoveContains_acrossWordBoundary() {
+        int[] ids = freshIds(10_000);
+        CategorySet set = new CategorySet();
+        for (int id : ids) assertTrue(set.add(id));
+        assertFalse(set.add(ids[63]));
+        assertEquals(ids.length, set.size());
+        for (int id : ids) assertTrue(set.contains(id));
+
+        for (int i = 0; i < ids.length; i += 2) assertTrue(set.remove(ids[i]));
+        assertFalse(set.remove(ids[0]));
+        for (int i = 0; i < ids.length; i++) assertEquals(i % 2 == 1, set.contains(ids[i]));
+        assertEquals(ids.length / 2, set.size());
+        assertFalse(set.contains(9_999)); // слот ещё не выдавался
+    }
+
+    @Test
+    public void farIds_useSlotMap() {
+        CategorySet set = CategorySet.of(1 << 20, -5, 3);
+        assertTrue(set.contains(1 << 20));
+        assertTrue(set.contains(-5));
+        assertTrue(set.contains(3));
+        assertFalse(set.contains((1 << 20) + 1));
+        assertEquals(3, set.toArray().length);
+        assertEquals(3, set.toIds().size());
+    }
+
+    @Test
+    public void setOperations_withDifferentLengths() {
+        int[] ids = freshIds(20_000);
+        int first = ids[0], last = ids[ids.length - 1], middle = ids[70];
+        CategorySet shortSet = CategorySet.of(first);
+        CategorySet longSet = CategorySet.of(first, middle, last);
+
+        assertEquals(CategorySet.of(first, middle, last), shortSet.union(longSet));
+        assertEquals(shortSet.union(longSet), longSet.union(shortSet));
+
+        assertEquals(CategorySet.of(first), shortSet.intersection(longSet));
+        assertEquals(CategorySet.of(first), longSet.intersection(shortSet));
+
+        assertEquals(CategorySet.of(middle, last), longSet.difference(shortSet));
+        assertTrue(shortSet.difference(longSet).isEmpty());
+
+        assertTrue(longSet.containsAll(shortSet));
+        assertFalse(shortSet.containsAll(longSet));
+        assertTrue(shortSet.containsAll(new CategorySet()));
+        assertTrue(longSet.intersects(shortSet));
+        assertFalse(CategorySet.of(last).intersects(shortSet));
+    }
+
+    @Test
+    public void equalsIgnoresTrailingEmptyWords() {
+        int[] ids = freshIds(30_000);
+        CategorySet set = CategorySet.of(ids[0], ids[129]);
+        set.remove(ids[129]);
+        assertEquals(CategorySet.of(ids[0]), set);
+        assertEquals(CategorySet.of(ids[0]).hashCode(), set.hashCode());
+        assertEquals(Arrays.asList(ids[0]), set.toIds());
+    }
+
+    @Test
+    public void operationsDoNotModifyOperands() {
+        int[] ids = freshIds(40_000);
+        CategorySet a = CategorySet.of(ids[0], ids[100]);
+        CategorySet b = CategorySet.of(ids[100]);
+        a.union(b);
+        a.intersection(b);
+        a.difference(b);
+        assertEquals(CategorySet.of(ids[0], ids[100]), a);
+        assertEquals(CategorySet.of(ids[100]), b);
+        CategorySet copy = new CategorySet(a);
+        copy.remove(ids[0]);
+        assertTrue(a.contains(ids[0]));
+        List<Integer> expected = Arrays.asList(ids[0], ids[100]);
+        assertEquals(expected, a.toIds());
+    }
+}
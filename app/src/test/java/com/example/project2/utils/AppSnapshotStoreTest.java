@@ -0,0 +1,83 @@
+package com.example.project2.utils;
+
+import com.example.project2.models.AppCatalog;
+import com.example.project2.models.AppInfo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the binary app snapshot and rejection of truncated or corrupt files.
+ */
+public class AppSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeSample() throws Exception {
+        File file = new File(folder.getRoot(), "apps.snapshot");
+        AppCatalog catalog = new AppCatalog(3);
+        List<AppInfo> apps = Arrays.asList(
+                catalog.set(0, "com.example.a", "Календарь", "Work", 42),
+                catalog.set(1, "com.example.b", null, null, 0),
+                catalog.set(2, "com.example.c", "", "Games", 7));
+        AppSnapshotStore.write(file, apps, 5, 9);
+        return file;
+    }
+
+    @Test
+    public void roundTrip_keepsNullsAndStamps() throws Exception {
+        AppSnapshotStore.Snapshot snapshot = AppSnapshotStore.read(writeSample());
+        assertNotNull(snapshot);
+        assertEquals(5, snapshot.getSequenceNumber());
+        assertEquals(9, snapshot.getBootCount());
+        List<AppInfo> apps = snapshot.asList(null);
+        assertEquals(3, apps.size());
+        assertEquals("Календарь", apps.get(0).getAppName());
+        assertEquals(42, apps.get(0).getIconStamp());
+        // null остаётся null, а не пустой строкой
+        assertNull(apps.get(1).getAppName());
+        assertNull(apps.get(1).getAutoCategory());
+        assertEquals("", apps.get(2).getAppName());
+        assertEquals("Games", apps.get(2).getAutoCategory());
+    }
+
+    @Test
+    public void read_rejectsTruncatedFile() throws Exception {
+        File file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertNull(AppSnapshotStore.read(file));
+    }
+
+    @Test
+    public void read_rejectsCorruptOffsetsAndLengths() throws Exception {
+        File file = writeSample();
+        int recordOffset;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Смещение второй записи за концом файла
+            raf.seek(24);
+            recordOffset = raf.readInt();
+            raf.seek(24);
+            raf.writeInt((int) raf.length() + 100);
+        }
+        assertNull(AppSnapshotStore.read(file));
+
+        file = writeSample();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Длина имени пакета второй записи больше остатка файла
+            raf.seek(recordOffset);
+            raf.writeInt(1 << 20);
+        }
+        assertNull(AppSnapshotStore.read(file));
+    }
+}
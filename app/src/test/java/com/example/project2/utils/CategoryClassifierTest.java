@@ -0,0 +1,152 @@
+package com.example.project2.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the compiled rule matcher against the former if-chain implementation.
+ * The speed comparison runs only with -Dbenchmarks=true.
+ */
+public class CategoryClassifierTest {
+
+    private static final String RULES_PATH = "src/main/res/raw/category_rules.txt";
+
+    private static final String[] WORDS = {
+            "game", "play", "casino", "puzzle", "word", "match", "arcade", "adventure", "rpg", "strategy",
+            "facebook", "instagram", "twitter", "tiktok", "snapchat", "telegram", "whatsapp", "vk", "vkontakte",
+            "messenger", "discord", "reddit", "linkedin", "doc", "sheet", "slide", "excel", "pdf", "office",
+            "drive", "mail", "outlook", "calendar", "note", "task", "meeting", "zoom", "teams",
+            "camera", "gallery", "music", "weather", "clock", "maps", "bank", "shop", "fitness", "news",
+            "Player", "Docs", "Mailbox", "Калькулятор", "Заметки", "SuperGame", "Notes", "Drivers"
+    };
+
+    @Test
+    public void matchesLegacyOnSyntheticCorpus() throws Exception {
+        CategoryClassifier classifier = bundledRules();
+        String[][] apps = syntheticApps(5000);
+        for (String[] app : apps) {
+            assertEquals(app[0] + " / " + app[1], legacyDetect(app[0], app[1]), classifier.classify(app[0], app[1]));
+        }
+    }
+
+    @Test
+    public void benchmark_againstLegacy() throws Exception {
+        assumeTrue("run with -Dbenchmarks=true", Boolean.getBoolean("benchmarks"));
+        CategoryClassifier classifier = bundledRules();
+        String[][] apps = syntheticApps(5000);
+        int rounds = 20;
+        // Прогрев JIT для обеих реализаций
+        for (int i = 0; i < 5; i++) {
+            for (String[] app : apps) {
+                legacyDetect(app[0], app[1]);
+                classifier.classify(app[0], app[1]);
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) for (String[] app : apps) legacyDetect(app[0], app[1]);
+        long legacy = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) for (String[] app : apps) classifier.classify(app[0], app[1]);
+        long compiled = System.nanoTime() - start;
+        System.out.println("5000 apps, legacy if-chains: " + legacy / rounds / 1000 + " us/round, compiled rules: "
+                + compiled / rounds / 1000 + " us/round");
+    }
+
+    @Test
+    public void firstMatchingRuleWins() throws Exception {
+        CategoryClassifier classifier = CategoryClassifier.parse(new StringReader(
+                "Work prefix com.microsoft.\n" +
+                "Games contains game word\n" +
+                "Work contains word office\n"));
+        assertEquals("Work", classifier.classify("com.microsoft.office.word", "Word"));
+        assertEquals("Games", classifier.classify("com.example.words", "Words"));
+        assertEquals("Work", classifier.classify("com.example.suite", "Office"));
+        assertEquals(CategoryClassifier.DEFAULT_CATEGORY, classifier.classify("com.example.camera", "Camera"));
+    }
+
+    @Test
+    public void cachedByVersionCode() throws Exception {
+        CategoryClassifier classifier = CategoryClassifier.parse(new StringReader("Games contains game\n"));
+        assertEquals("Games", classifier.classify("com.example.app", "Game", 1));
+        // Тот же versionCode и название — результат из кэша; новая версия классифицируется заново
+        assertEquals("Games", classifier.classify("com.example.app", "Game", 1));
+        assertEquals(CategoryClassifier.DEFAULT_CATEGORY, classifier.classify("com.example.app", "Camera", 2));
+    }
+
+    private static CategoryClassifier bundledRules() throws Exception {
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(rulesFile()), StandardCharsets.UTF_8)) {
+            return CategoryClassifier.parse(reader);
+        }
+    }
+
+    /**
+     * Finds the bundled rules independently of the working directory: an explicit {@code categoryRules}
+     * system property, otherwise the first module directory above user.dir or the compiled test classes.
+     */
+    private static File rulesFile() throws Exception {
+        String explicit = System.getProperty("categoryRules");
+        if (explicit != null) return new File(explicit);
+        File classes = new File(CategoryClassifierTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        for (File start : new File[]{new File(System.getProperty("user.dir")).getAbsoluteFile(), classes}) {
+            for (File dir = start; dir != null; dir = dir.getParentFile()) {
+                for (String path : new String[]{RULES_PATH, "app/" + RULES_PATH}) {
+                    File file = new File(dir, path);
+                    if (file.isFile()) return file;
+                }
+            }
+        }
+        throw new FileNotFoundException(RULES_PATH + " not found above " + System.getProperty("user.dir"));
+    }
+
+    private static String[][] syntheticApps(int count) {
+        Random random = new Random(42);
+        String[][] apps = new String[count][];
+        for (int i = 0; i < count; i++) {
+            String pkg = "com." + pick(random).toLowerCase() + "." + pick(random).toLowerCase() + i;
+            StringBuilder name = new StringBuilder(pick(random));
+            int extra = random.nextInt(3);
+            for (int j = 0; j < extra; j++) name.append(' ').append(pick(random));
+            apps[i] = new String[]{pkg, random.nextInt(50) == 0 ? null : name.toString()};
+        }
+        return apps;
+    }
+
+    private static String pick(Random random) {
+        // Половина слов — случайные, чтобы многие приложения не попадали ни в одну категорию
+        if (random.nextBoolean()) return "x" + Integer.toString(random.nextInt(1 << 20), 36);
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    // Прежняя реализация AppManager.detectCategory
+    private static String legacyDetect(String packageName, String appName) {
+        String lower = (packageName + " " + appName).toLowerCase();
+        if (lower.contains("game") || lower.contains("play") || lower.contains("casino") ||
+                lower.contains("puzzle") || lower.contains("word") || lower.contains("match") ||
+                lower.contains("arcade") || lower.contains("adventure") || lower.contains("rpg") ||
+                lower.contains("strategy")) return "Games";
+        if (lower.contains("facebook") || lower.contains("instagram") || lower.contains("twitter") ||
+                lower.contains("tiktok") || lower.contains("snapchat") || lower.contains("telegram") ||
+                lower.contains("whatsapp") || lower.contains("vk") || lower.contains("vkontakte") ||
+                lower.contains("messenger") || lower.contains("discord") || lower.contains("reddit") ||
+                lower.contains("linkedin")) return "Social";
+        if (lower.contains("doc") || lower.contains("sheet") || lower.contains("slide") ||
+                lower.contains("word") || lower.contains("excel") || lower.contains("pdf") ||
+                lower.contains("office") || lower.contains("drive") || lower.contains("mail") ||
+                lower.contains("outlook") || lower.contains("calendar") || lower.contains("note") ||
+                lower.contains("task") || lower.contains("meeting") || lower.contains("zoom") ||
+                lower.contains("teams")) return "Work";
+        return "Other";
+    }
+}
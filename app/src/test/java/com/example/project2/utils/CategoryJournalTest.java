@@ -0,0 +1,127 @@
+package com.example.project2.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays journals written through the public API, including torn tails and compaction.
+ */
+public class CategoryJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Записи в порядке проигрывания, в виде строк для сравнения
+    private static class Recorder implements CategoryJournal.Replayer {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void addApp(String packageName, int categoryId) { events.add("add " + packageName + " " + categoryId); }
+
+        @Override
+        public void removeApp(String packageName, int categoryId) { events.add("remove " + packageName + " " + categoryId); }
+
+        @Override
+        public void putCategory(int id, String name, int color, boolean builtIn) {
+            events.add("put " + id + " " + name + " " + color + " " + builtIn);
+        }
+
+        @Override
+        public void deleteCategory(int id) { events.add("delete " + id); }
+    }
+
+    private static List<String> replay(File file) {
+        Recorder recorder = new Recorder();
+        new CategoryJournal(file).replay(recorder);
+        return recorder.events;
+    }
+
+    @Test
+    public void replay_appliesRecordsAndBatchesInOrder() throws Exception {
+        File file = folder.newFile("journal.log");
+        CategoryJournal journal = new CategoryJournal(file);
+        journal.putCategory(5, "Работа", 0xFF123456, false);
+        journal.addApp("com.example.a", 5);
+        journal.begin().addApp("com.example.b", 5).removeApp("com.example.a", 5).deleteCategory(3).commit();
+        journal.sync();
+
+        assertEquals(Arrays.asList(
+                "put 5 Работа " + 0xFF123456 + " false",
+                "add com.example.a 5",
+                "add com.example.b 5",
+                "remove com.example.a 5",
+                "delete 3"), replay(file));
+        assertEquals(3, new CategoryJournal(file).replay(new Recorder()));
+    }
+
+    @Test
+    public void replay_truncatesTornTailAndKeepsAppending() throws Exception {
+        File file = folder.newFile("journal.log");
+        CategoryJournal journal = new CategoryJournal(file);
+        journal.addApp("com.example.a", 1);
+        journal.begin().addApp("com.example.b", 1).addApp("com.example.c", 1).commit();
+        journal.sync();
+        long complete = file.length();
+        // Сбой посреди записи: длина рамки и часть данных пакета
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 5, 0, 0});
+        }
+
+        CategoryJournal reopened = new CategoryJournal(file);
+        Recorder recorder = new Recorder();
+        assertEquals(2, reopened.replay(recorder));
+        assertEquals(Arrays.asList("add com.example.a 1", "add com.example.b 1", "add com.example.c 1"), recorder.events);
+        assertEquals(complete, file.length());
+
+        // Новые записи идут сразу за последней целой рамкой и читаются при следующей загрузке
+        reopened.removeApp("com.example.a", 1);
+        reopened.sync();
+        assertEquals(Arrays.asList("add com.example.a 1", "add com.example.b 1", "add com.example.c 1",
+                "remove com.example.a 1"), replay(file));
+    }
+
+    @Test
+    public void replay_dropsFrameWithBadChecksum() throws Exception {
+        File file = folder.newFile("journal.log");
+        CategoryJournal journal = new CategoryJournal(file);
+        journal.addApp("com.example.a", 1);
+        journal.sync();
+        long first = file.length();
+        journal.addApp("com.example.b", 1);
+        journal.sync();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(first + 6);
+            raf.write(raf.read() ^ 0xFF);
+        }
+
+        assertEquals(Arrays.asList("add com.example.a 1"), replay(file));
+        assertEquals(first, file.length());
+    }
+
+    @Test
+    public void replay_afterCompactionSeesOnlyNewRecords() throws Exception {
+        File file = folder.newFile("journal.log");
+        CategoryJournal journal = new CategoryJournal(file);
+        journal.addApp("com.example.a", 1);
+        journal.addApp("com.example.b", 1);
+        journal.sync();
+        boolean[] snapshotWritten = {false};
+        journal.compact(() -> snapshotWritten[0] = true);
+        journal.addApp("com.example.c", 2);
+        journal.sync();
+
+        assertTrue(snapshotWritten[0]);
+        assertEquals(Arrays.asList("add com.example.c 2"), replay(file));
+        assertFalse(journal.needsCompaction());
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.project2.utils;
+
+import com.example.project2.models.AppInfo;
+import com.example.project2.models.Category;
+import com.example.project2.models.CategorySet;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Round-trip tests for the streaming serializers and compatibility with data written by reflective Gson.
+ * The comparison with the reflective path runs only with -Dbenchmarks=true.
+ */
+public class JsonAdaptersTest {
+
+    @Test
+    public void apps_roundTrip() throws Exception {
+        List<AppInfo> apps = sampleApps(50);
+        List<AppInfo> restored = JsonAdapters.appsFromJson(JsonAdapters.appsToJson(apps));
+        assertEquals(apps.size(), restored.size());
+        for (int i = 0; i < apps.size(); i++) {
+            assertEquals(apps.get(i).getPackageName(), restored.get(i).getPackageName());
+            assertEquals(apps.get(i).getAppName(), restored.get(i).getAppName());
+            assertEquals(apps.get(i).getAutoCategory(), restored.get(i).getAutoCategory());
+            assertEquals(apps.get(i).getUserCategoryIds(), restored.get(i).getUserCategoryIds());
+        }
+    }
+
+    @Test
+    public void apps_readsReflectiveGsonOutput() throws Exception {
+        List<AppInfo> apps = sampleApps(5);
+        String legacy = new Gson().toJson(legacyApps(apps));
+        List<AppInfo> restored = JsonAdapters.appsFromJson(legacy);
+        assertEquals(apps.size(), restored.size());
+        assertEquals(apps.get(3).getAppName(), restored.get(3).getAppName());
+        assertEquals(apps.get(3).getUserCategoryIds(), restored.get(3).getUserCategoryIds());
+    }
+
+    @Test
+    public void apps_handlesUnicodeAndNulls() throws Exception {
+        AppInfo app = new AppInfo("com.example.тест", "Календарь \"бета\"", null);
+        AppInfo noName = new AppInfo("com.example.noname", null, null);
+        List<AppInfo> restored = JsonAdapters.appsFromJson(JsonAdapters.appsToJson(Arrays.asList(app, noName)));
+        assertEquals(app.getPackageName(), restored.get(0).getPackageName());
+        assertEquals(app.getAppName(), restored.get(0).getAppName());
+        assertNull(restored.get(1).getAppName());
+        assertEquals("Other", restored.get(1).getAutoCategory());
+    }
+
+    @Test
+    public void categories_roundTrip() throws Exception {
+        Category games = new Category(0, "Games");
+        games.setColor(0xFF4CAF50);
+        games.setBuiltIn(true);
+        Category custom = new Category(7, "Мои");
+        List<Category> restored = JsonAdapters.categoriesFromJson(JsonAdapters.categoriesToJson(Arrays.asList(games, custom)));
+        assertEquals(2, restored.size());
+        assertEquals(0, restored.get(0).getId());
+        assertEquals("Games", restored.get(0).getName());
+        assertEquals(0xFF4CAF50, restored.get(0).getColor());
+        assertTrue(restored.get(0).isBuiltIn());
+        assertEquals(7, restored.get(1).getId());
+        assertEquals(custom.getColor(), restored.get(1).getColor());
+        assertFalse(restored.get(1).isBuiltIn());
+    }
+
+    @Test
+    public void categories_readsReflectiveGsonOutput() throws Exception {
+        // Старые версии писали и список пакетов категории — при чтении он пропускается
+        String legacy = "[{\"id\":4,\"name\":\"Work stuff\",\"packageNames\":[\"com.example.a\"],"
+                + "\"color\":" + 0xFF123456 + ",\"builtIn\":false}]";
+        List<Category> restored = JsonAdapters.categoriesFromJson(legacy);
+        assertEquals(4, restored.get(0).getId());
+        assertEquals("Work stuff", restored.get(0).getName());
+        assertEquals(0xFF123456, restored.get(0).getColor());
+    }
+
+    @Test
+    public void appCategoryMap_roundTrip() throws Exception {
+        Map<String, List<Integer>> legacy = sampleMap(100);
+        Map<String, CategorySet> map = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : legacy.entrySet()) map.put(entry.getKey(), CategorySet.of(entry.getValue()));
+        assertEquals(map, JsonAdapters.appCategoryMapFromJson(JsonAdapters.appCategoryMapToJson(map)));
+        assertEquals(map, JsonAdapters.appCategoryMapFromJson(new Gson().toJson(legacy)));
+    }
+
+    @Test
+    public void benchmark_againstReflectiveGson() throws Exception {
+        assumeTrue("run with -Dbenchmarks=true", Boolean.getBoolean("benchmarks"));
+        List<AppInfo> apps = sampleApps(2000);
+        Map<String, List<Integer>> legacyMap = sampleMap(2000);
+        Map<String, CategorySet> map = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : legacyMap.entrySet()) map.put(entry.getKey(), CategorySet.of(entry.getValue()));
+        Gson gson = new Gson();
+        List<LegacyApp> legacy = legacyApps(apps);
+        Type appsType = new TypeToken<List<LegacyApp>>(){}.getType();
+        Type mapType = new TypeToken<Map<String, List<Integer>>>(){}.getType();
+        int rounds = 20;
+        // Прогрев JIT для обоих путей
+        for (int i = 0; i < 5; i++) {
+            gson.fromJson(gson.toJson(legacy), appsType);
+            gson.fromJson(gson.toJson(legacyMap), mapType);
+            JsonAdapters.appsFromJson(JsonAdapters.appsToJson(apps));
+            JsonAdapters.appCategoryMapFromJson(JsonAdapters.appCategoryMapToJson(map));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            gson.fromJson(gson.toJson(legacy), appsType);
+            gson.fromJson(gson.toJson(legacyMap), mapType);
+        }
+        long reflective = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            JsonAdapters.appsFromJson(JsonAdapters.appsToJson(apps));
+            JsonAdapters.appCategoryMapFromJson(JsonAdapters.appCategoryMapToJson(map));
+        }
+        long streaming = System.nanoTime() - start;
+        System.out.println("reflective Gson: " + reflective / rounds / 1000 + " us/round, streaming: "
+                + streaming / rounds / 1000 + " us/round");
+    }
+
+    private static List<AppInfo> sampleApps(int count) {
+        List<AppInfo> apps = new ArrayList<>();
+        String[] categories = {"Games", "Social", "Work", "Other"};
+        for (int i = 0; i < count; i++) {
+            AppInfo app = new AppInfo("com.example.app" + i, "App " + i, null);
+            app.setAutoCategory(categories[i % categories.length]);
+            if (i % 3 == 0) app.addToUserCategory(3 + i % 5);
+            if (i % 7 == 0) app.addToUserCategory(10);
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    // AppInfo fields as the reflective Gson path used to store them, before membership became a bitset
+    private static class LegacyApp {
+        String packageName;
+        String appName;
+        String autoCategory;
+        List<Integer> userCategoryIds;
+    }
+
+    private static List<LegacyApp> legacyApps(List<AppInfo> apps) {
+        List<LegacyApp> result = new ArrayList<>();
+        for (AppInfo app : apps) {
+            LegacyApp legacy = new LegacyApp();
+            legacy.packageName = app.getPackageName();
+            legacy.appName = app.getAppName();
+            legacy.autoCategory = app.getAutoCategory();
+            legacy.userCategoryIds = app.getUserCategoryIds();
+            result.add(legacy);
+        }
+        return result;
+    }
+
+    private static Map<String, List<Integer>> sampleMap(int count) {
+        Map<String, List<Integer>> map = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            map.put("com.example.app" + i, new ArrayList<>(Arrays.asList(3 + i % 5, 200 + i % 3)));
+        }
+        return map;
+    }
+}